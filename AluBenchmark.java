@@ -0,0 +1,116 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cpu.Alu.RotDir;
+
+/**
+ * measures the number of operations per second of the arithmetic and logic
+ * unit, on operands drawn once for all from a fixed seed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class AluBenchmark {
+
+    private static final int OPERATIONS_PER_INVOCATION = 1024;
+    private static final long SEED = 0x6A6D68L;
+
+    private final int[] bytes = new int[OPERATIONS_PER_INVOCATION];
+    private final int[] shorts = new int[OPERATIONS_PER_INVOCATION];
+    private final boolean[] carries = new boolean[OPERATIONS_PER_INVOCATION];
+
+    @Setup
+    public void setUp() {
+        Random rng = new Random(SEED);
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++) {
+            bytes[i] = rng.nextInt(0x100);
+            shorts[i] = rng.nextInt(0x10000);
+            carries[i] = rng.nextBoolean();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public int add() {
+        int acc = 0;
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++)
+            acc ^= Alu.add(bytes[i], bytes[(i + 1) % OPERATIONS_PER_INVOCATION],
+                    carries[i]);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public int sub() {
+        int acc = 0;
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++)
+            acc ^= Alu.sub(bytes[i], bytes[(i + 1) % OPERATIONS_PER_INVOCATION],
+                    carries[i]);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public int add16() {
+        int acc = 0;
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++)
+            acc ^= Alu.add16H(shorts[i],
+                    shorts[(i + 1) % OPERATIONS_PER_INVOCATION]);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public int logic() {
+        int acc = 0;
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++) {
+            int r = bytes[(i + 1) % OPERATIONS_PER_INVOCATION];
+            acc ^= Alu.and(bytes[i], r) ^ Alu.or(bytes[i], r)
+                    ^ Alu.xor(bytes[i], r);
+        }
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public int shiftsAndRotations() {
+        int acc = 0;
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++)
+            acc ^= Alu.shiftLeft(bytes[i]) ^ Alu.shiftRightA(bytes[i])
+                    ^ Alu.rotate(RotDir.LEFT, bytes[i], carries[i])
+                    ^ Alu.swap(bytes[i]);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS_PER_INVOCATION)
+    public int bcdAdjust() {
+        int acc = 0;
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; i++)
+            acc ^= Alu.bcdAdjust(bytes[i], carries[i], Integer.bitCount(i) % 2 == 0,
+                    carries[(i + 1) % OPERATIONS_PER_INVOCATION]);
+        return acc;
+    }
+}
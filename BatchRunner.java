@@ -0,0 +1,378 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.RewindBuffer;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * runs simulations of many ROMs without any display, each of them on a thread
+ * of a pool of fixed size, and reports their results.
+ */
+public final class BatchRunner {
+
+    private static final String USAGE = "usage: BatchRunner [-frames N | -cycles N] [-script FILE]"
+            + " [-rewind SECONDS] [-threads N] [-jobs FILE] [-out FILE] [ROM...]";
+
+    private static final int SNAPSHOTS_PER_KEYFRAME = 30;
+    // the number of images drawn at the end of a simulation, the previous
+    // ones being skipped as nobody sees them
+    private static final int DRAWN_IMAGES = 2;
+
+    private final int threads;
+
+    /**
+     * represents a simulation to run: a ROM, the number of cycles during which
+     * it is simulated and the script of the keys pressed during the simulation.
+     */
+    public static final class Job {
+        private final File rom;
+        private final long cycles;
+        private final InputScript script;
+        private final int rewindSeconds;
+
+        /**
+         * builds a simulation of the given ROM during the given number of
+         * cycles, following the given input script.
+         *
+         * @param rom
+         *            the ROM file
+         * @param cycles
+         *            the number of cycles to simulate (must be positive)
+         * @param script
+         *            the input script
+         * @throws NullPointerException
+         *             if the ROM or the script is null
+         * @throws IllegalArgumentException
+         *             if the number of cycles is negative
+         */
+        public Job(File rom, long cycles, InputScript script) {
+            this(rom, cycles, script, 0);
+        }
+
+        /**
+         * builds a simulation of the given ROM during the given number of
+         * cycles, following the given input script, and keeping a snapshot of
+         * each image of the given number of last seconds in a rewind history.
+         *
+         * @param rom
+         *            the ROM file
+         * @param cycles
+         *            the number of cycles to simulate (must be positive)
+         * @param script
+         *            the input script
+         * @param rewindSeconds
+         *            the duration of the rewind history in seconds, or 0 to
+         *            keep no history (must be positive)
+         * @throws NullPointerException
+         *             if the ROM or the script is null
+         * @throws IllegalArgumentException
+         *             if the number of cycles or the duration is negative
+         */
+        public Job(File rom, long cycles, InputScript script,
+                int rewindSeconds) {
+            Preconditions.checkArgument(cycles >= 0 && rewindSeconds >= 0);
+            this.rom = Objects.requireNonNull(rom);
+            this.cycles = cycles;
+            this.script = Objects.requireNonNull(script);
+            this.rewindSeconds = rewindSeconds;
+        }
+    }
+
+    /**
+     * represents the result of a simulation.
+     */
+    public static final class Result {
+        private final File rom;
+        private final long frameHash;
+        private final long cycles;
+        private final long nanos;
+        private final long rewindBytes;
+
+        private Result(File rom, long frameHash, long cycles, long nanos,
+                long rewindBytes) {
+            this.rom = rom;
+            this.frameHash = frameHash;
+            this.cycles = cycles;
+            this.nanos = nanos;
+            this.rewindBytes = rewindBytes;
+        }
+
+        /**
+         * @return the ROM file which was simulated
+         */
+        public File rom() {
+            return rom;
+        }
+
+        /**
+         * @return the hash of the colors of the last image drawn, only the
+         *         last images of the simulation being drawn
+         */
+        public long frameHash() {
+            return frameHash;
+        }
+
+        /**
+         * @return the number of cycles simulated
+         */
+        public long cycles() {
+            return cycles;
+        }
+
+        /**
+         * @return the time taken by the simulation, in nanoseconds
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the number of bytes of the rewind history at the end of the
+         *         simulation, 0 if it kept none
+         */
+        public long rewindBytes() {
+            return rewindBytes;
+        }
+
+        /**
+         * @return the number of cycles simulated per second
+         */
+        public double cyclesPerSecond() {
+            return nanos == 0 ? 0 : cycles * 1e9 / nanos;
+        }
+
+        /**
+         * return the result as a line of comma separated values: the ROM, the
+         * hash of the last image, the number of cycles, the time in
+         * milliseconds, the number of cycles per second and the size of the
+         * rewind history in bytes.
+         */
+        @Override
+        public String toString() {
+            return String.format("%s,%016x,%d,%d,%.0f,%d", rom.getPath(),
+                    frameHash, cycles, nanos / 1_000_000, cyclesPerSecond(),
+                    rewindBytes);
+        }
+    }
+
+    /**
+     * builds a runner using the given number of threads.
+     *
+     * @param threads
+     *            the number of threads (must be strictly positive)
+     * @throws IllegalArgumentException
+     *             if the number of threads is not strictly positive
+     */
+    public BatchRunner(int threads) {
+        Preconditions.checkArgument(threads > 0);
+        this.threads = threads;
+    }
+
+    /**
+     * runs the given simulation on the calling thread.
+     *
+     * @param job
+     *            the simulation
+     * @throws IOException
+     *             in case of input-output error while reading the ROM
+     * @return the result of the simulation
+     */
+    public static Result run(Job job) throws IOException {
+        GameBoy gb = newGameBoy(Cartridge.ofFile(job.rom));
+        LcdController lcdc = gb.lcdController();
+        RewindBuffer history = job.rewindSeconds == 0 ? null
+                : new RewindBuffer(Math.max(SNAPSHOTS_PER_KEYFRAME,
+                        (int) (job.rewindSeconds * GameBoy.CYCLES_PER_SECOND
+                                / LcdController.CYCLES_PER_IMAGE)),
+                        SNAPSHOTS_PER_KEYFRAME);
+
+        long start = System.nanoTime();
+        for (long image = 0; gb.cycles() < job.cycles; image++) {
+            job.script.applyTo(gb.joypad(), image);
+            lcdc.setRenderMode(job.cycles - gb.cycles() > DRAWN_IMAGES
+                    * LcdController.CYCLES_PER_IMAGE
+                            ? LcdController.RenderMode.NONE
+                            : LcdController.RenderMode.FRAME_BUFFER);
+            gb.runUntil(Math.min(job.cycles,
+                    (image + 1) * LcdController.CYCLES_PER_IMAGE));
+            if (history != null)
+                history.push(gb.snapshot());
+        }
+        long nanos = System.nanoTime() - start;
+
+        long hash = 0;
+        for (byte color : lcdc.currentFrame())
+            hash = hash * 31 + color;
+        return new Result(job.rom, hash, gb.cycles(), nanos,
+                history == null ? 0 : history.byteSize());
+    }
+
+    /**
+     * return a Game Boy using the given cartridge, configured for simulations
+     * without display: the instructions of the cartridge are cached and the
+     * images are drawn in a frame buffer.
+     */
+    static GameBoy newGameBoy(Cartridge cartridge) {
+        GameBoy gb = new GameBoy(cartridge);
+        gb.enableCodeCache();
+        gb.lcdController().setRenderMode(LcdController.RenderMode.FRAME_BUFFER);
+        return gb;
+    }
+
+    /**
+     * runs the given simulations on the threads of this runner and returns
+     * their results, in the order of the simulations.
+     *
+     * @param jobs
+     *            the simulations
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     * @throws ExecutionException
+     *             if one of the simulations failed
+     * @return the results of the simulations
+     */
+    public List<Result> runAll(List<Job> jobs)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Job job : jobs)
+                futures.add(executor.submit(() -> run(job)));
+
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> f : futures)
+                results.add(f.get());
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * runs the simulations described by the given arguments and writes their
+     * results, one per line.
+     *
+     * The ROMs passed as arguments are simulated with the budget and the
+     * script given by the options, which are by default 600 images and no
+     * key. Each line of a jobs file contains a ROM, optionally followed by
+     * frames=N or cycles=N, by script=FILE and by rewind=SECONDS. The program
+     * exits with status 1 if the results could not be written.
+     *
+     * @param args
+     *            the arguments
+     */
+    public static void main(String[] args) throws Exception {
+        long cycles = 600L * LcdController.CYCLES_PER_IMAGE;
+        InputScript script = InputScript.EMPTY;
+        int rewindSeconds = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outFile = null;
+        List<Job> jobs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("-") && i + 1 == args.length)
+                usage();
+            switch (arg) {
+            case "-frames":
+                cycles = Long.parseLong(args[++i])
+                        * LcdController.CYCLES_PER_IMAGE;
+                break;
+            case "-cycles":
+                cycles = Long.parseLong(args[++i]);
+                break;
+            case "-script":
+                script = InputScript.ofFile(new File(args[++i]));
+                break;
+            case "-rewind":
+                rewindSeconds = Integer.parseInt(args[++i]);
+                break;
+            case "-threads":
+                threads = Integer.parseInt(args[++i]);
+                break;
+            case "-out":
+                outFile = new File(args[++i]);
+                break;
+            case "-jobs":
+                for (String line : Files
+                        .readAllLines(new File(args[++i]).toPath())) {
+                    if (!line.isBlank() && !line.trim().startsWith("#"))
+                        jobs.add(parseJob(line.trim(), cycles, script,
+                                rewindSeconds));
+                }
+                break;
+            default:
+                if (arg.startsWith("-"))
+                    usage();
+                jobs.add(new Job(new File(arg), cycles, script, rewindSeconds));
+            }
+        }
+        if (jobs.isEmpty())
+            usage();
+
+        boolean failed;
+        try (PrintStream file = outFile == null ? null
+                : new PrintStream(outFile)) {
+            PrintStream out = file == null ? System.out : file;
+            out.println("rom,hash,cycles,ms,cycles_per_second,rewind_bytes");
+            for (Result r : new BatchRunner(threads).runAll(jobs))
+                out.println(r);
+            failed = out.checkError();
+        }
+        if (failed) {
+            System.err.println("error while writing the results");
+            System.exit(1);
+        }
+    }
+
+    private static Job parseJob(String line, long cycles, InputScript script,
+            int rewindSeconds) throws IOException {
+        String[] words = line.split("\\s+");
+        for (int i = 1; i < words.length; i++) {
+            String[] option = words[i].split("=", 2);
+            Preconditions.checkArgument(option.length == 2);
+            switch (option[0]) {
+            case "frames":
+                cycles = Long.parseLong(option[1])
+                        * LcdController.CYCLES_PER_IMAGE;
+                break;
+            case "cycles":
+                cycles = Long.parseLong(option[1]);
+                break;
+            case "script":
+                script = InputScript.ofFile(new File(option[1]));
+                break;
+            case "rewind":
+                rewindSeconds = Integer.parseInt(option[1]);
+                break;
+            default:
+                throw new IllegalArgumentException(words[i]);
+            }
+        }
+        return new Job(new File(words[0]), cycles, script, rewindSeconds);
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
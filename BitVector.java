@@ -57,7 +57,7 @@ public final class BitVector {
         this(sizeInBits, false);
     }
 
-    private BitVector(int[] vector) {
+    BitVector(int[] vector) {
         this.vector = vector;
     }
 
@@ -136,38 +136,39 @@ public final class BitVector {
         return new BitVector(or);
     }
 
-    private int extensionElement(int index, extensionType type) {
-        if (index >= 0 && index < vector.length) {
-            return vector[index];
-        } else {
-            if (type == extensionType.zero) {
-                return 0;
-            } else {
-                return vector[Math.floorMod(index, vector.length)];
-            }
-        }
-    }
-
     private BitVector extract(int sizeInBits, int start, extensionType type) {
         checkArgument(sizeInBits % Integer.SIZE == 0 && sizeInBits > 0);
         int[] extracted = new int[sizeInBits / Integer.SIZE];
-        int startMod32 = Math.floorMod(start, Integer.SIZE);
-        int startDiv32 = Math.floorDiv(start, Integer.SIZE);
-
-        if (startMod32 == 0) {
-            for (int i = 0; i < extracted.length; i++) {
-                extracted[i] = extensionElement(startDiv32 + i, type);
-            }
-        } else {
-            for (int i = 0; i < extracted.length; i++) {
-                extracted[i] = extensionElement(startDiv32 + i, type) >>> start
-                        | extensionElement(startDiv32 + i + 1,
-                                type) << Integer.SIZE - start;
-            }
-        }
+        if (type == extensionType.zero)
+            MutableBitVector.extractZeroExtended(vector, extracted, start);
+        else
+            MutableBitVector.extractWrapped(vector, extracted, start);
         return new BitVector(extracted);
     }
 
+    /**
+     * computes a boolean function of two vectors of the same size, given by
+     * its truth table: the bit of index i of the result is the bit of index
+     * 2h + l of the table, h and l being the bits of index i of the vectors.
+     *
+     * @param high
+     *            the first vector
+     * @param low
+     *            the second vector (must have the same size as the first one)
+     * @param truthTable
+     *            the truth table (must be a 4 bits value)
+     * @throws IllegalArgumentException
+     *             if the second vector or the truth table is invalid
+     * @return a new bit vector which is the function of the two vectors
+     */
+    public static BitVector combine(BitVector high, BitVector low,
+            int truthTable) {
+        checkArgument(high.vector.length == low.vector.length);
+        int[] combined = new int[high.vector.length];
+        MutableBitVector.combine(high.vector, low.vector, truthTable, combined);
+        return new BitVector(combined);
+    }
+
     /**
      * extracts a vector of given size from the extension by 0 of this vector.
      * 
@@ -0,0 +1,146 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.bits;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measures the number of operations per second on bit vectors of the size of
+ * a line of the screen or of the background, filled from a fixed seed, both
+ * immutable and modified in place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class BitVectorBenchmark {
+
+    private static final long SEED = 0x627676L;
+
+    @Param({ "160", "256" })
+    public int size;
+
+    private BitVector v1;
+    private BitVector v2;
+    private int[] bytes;
+    private MutableBitVector m1;
+    private MutableBitVector m2;
+    private MutableBitVector scratch;
+    private MutableBitVector background;
+    private int[] high;
+    private int[] low;
+    private int[] words;
+
+    @Setup
+    public void setUp() {
+        Random rng = new Random(SEED);
+        bytes = new int[size / Byte.SIZE];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = rng.nextInt(0x100);
+        v1 = build();
+        BitVector.Builder b = new BitVector.Builder(size);
+        for (int i = 0; i < bytes.length; i++)
+            b.setByte(i, rng.nextInt(0x100));
+        v2 = b.build();
+        m1 = new MutableBitVector(size);
+        m2 = new MutableBitVector(size);
+        scratch = new MutableBitVector(size);
+        background = new MutableBitVector(256);
+        for (int i = 0; i < bytes.length; i++) {
+            m1.setByte(i, bytes[i]);
+            m2.setByte(i, rng.nextInt(0x100));
+        }
+        for (int i = 0; i < background.size() / Byte.SIZE; i++)
+            background.setByte(i, rng.nextInt(0x100));
+        high = rng.ints(size / Integer.SIZE).toArray();
+        low = rng.ints(size / Integer.SIZE).toArray();
+        words = new int[size / Integer.SIZE];
+    }
+
+    @Benchmark
+    public BitVector build() {
+        BitVector.Builder b = new BitVector.Builder(size);
+        for (int i = 0; i < bytes.length; i++)
+            b.setByte(i, bytes[i]);
+        return b.build();
+    }
+
+    @Benchmark
+    public BitVector not() {
+        return v1.not();
+    }
+
+    @Benchmark
+    public BitVector andOr() {
+        return v1.and(v2).or(v1);
+    }
+
+    @Benchmark
+    public BitVector shift() {
+        return v1.shift(13);
+    }
+
+    @Benchmark
+    public BitVector extractWrapped() {
+        return v1.extractWrapped(size, 83);
+    }
+
+    @Benchmark
+    public BitVector extractZeroExtended() {
+        return v1.extractZeroExtended(size, -45);
+    }
+
+    @Benchmark
+    public boolean testBit() {
+        return v1.testBit(size - 7);
+    }
+
+    @Benchmark
+    public MutableBitVector andOrInPlace() {
+        return scratch.set(m1).and(m2).or(m1);
+    }
+
+    @Benchmark
+    public MutableBitVector shiftInPlace() {
+        return scratch.set(m1).shift(13);
+    }
+
+    @Benchmark
+    public MutableBitVector extractWrappedInPlace() {
+        return scratch.extractWrapped(background, 83);
+    }
+
+    // both combinations are run with the incubating vector module, so that
+    // only the way of combining the words differs
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public int[] combineScalar() {
+        MutableBitVector.SCALAR_KERNEL.combine(high, low, 0b1011, words);
+        return words;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public int[] combineVector() {
+        MutableBitVector.VECTOR_KERNEL.combine(high, low, 0b1011, words);
+        return words;
+    }
+}
@@ -5,17 +5,20 @@
 
 package ch.epfl.gameboj.component.memory;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cartridge.Cartridge;
 
-public final class BootRomController implements Component {
+public final class BootRomController implements Component, Stateful {
 
     private final Cartridge cartridge;
-    private final Rom bootRom = new Rom(BootRom.DATA);
+    private static final Rom BOOT_ROM = new Rom(BootRom.DATA);
     private boolean disabled = false;
 
     /**
@@ -37,13 +40,32 @@ public final class BootRomController implements Component {
      */
     public int read(int address) {
         Preconditions.checkBits16(address);
-        if (!disabled && address < bootRom.size()) {
-            return bootRom.read(address);
+        if (!disabled && address < BOOT_ROM.size()) {
+            return BOOT_ROM.read(address);
         } else {
             return cartridge.read(address);
         }
     }
 
+    @Override
+    /**
+     * copies the bytes of the Boot Rom at once if they all belong to it while
+     * it's not disabled, and gives access to the cartridge if none belongs to
+     * it.
+     */
+    public boolean read(int address, byte[] destination, int offset,
+            int length) {
+        Preconditions.checkBits16(address);
+        if (disabled || address >= BOOT_ROM.size()) {
+            return cartridge.read(address, destination, offset, length);
+        } else if (address + length <= BOOT_ROM.size()) {
+            BOOT_ROM.read(address, destination, offset, length);
+            return true;
+        } else {
+            return Component.super.read(address, destination, offset, length);
+        }
+    }
+
     @Override
     /**
      * detects the writings to the address 0xFF50 and deactivates the Boot Rom
@@ -61,4 +83,58 @@ public final class BootRomController implements Component {
 
     }
 
+    /**
+     * return the offset, in the rom of the cartridge, of the byte currently
+     * mapped at the given address, or -1 if the address is not mapped to this
+     * rom, which is in particular the case of the Boot Rom while it is not
+     * disabled.
+     * 
+     * @param address
+     *            the address (must be a 16 bits value)
+     * @throws IllegalArgumentException
+     *             if the address is not a 16 bits value
+     * @return the offset in the rom of the cartridge of the byte mapped at the
+     *         given address, or -1 if there is none
+     */
+    public int romOffset(int address) {
+        Preconditions.checkBits16(address);
+        if (!disabled && address < BOOT_ROM.size()) {
+            return -1;
+        }
+        return cartridge.romOffset(address);
+    }
+
+    /**
+     * writes whether the Boot Rom is disabled, followed by the state of the
+     * cartridge.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        writer.writeBoolean(disabled);
+        cartridge.saveState(writer);
+    }
+
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        disabled = reader.readBoolean();
+        cartridge.restoreState(reader);
+    }
+
+    /**
+     * return the address ranges of the cartridge, to which are added those of
+     * the Boot Rom and of the register disabling it.
+     */
+    @Override
+    public int[] addressRanges() {
+        int[] cartridgeRanges = cartridge.addressRanges();
+        int[] ranges = Arrays.copyOf(cartridgeRanges,
+                cartridgeRanges.length + 4);
+        ranges[cartridgeRanges.length] = AddressMap.BOOT_ROM_START;
+        ranges[cartridgeRanges.length + 1] = AddressMap.BOOT_ROM_END;
+        ranges[cartridgeRanges.length + 2] = AddressMap.REG_BOOT_ROM_DISABLE;
+        ranges[cartridgeRanges.length + 3] = AddressMap.REG_BOOT_ROM_DISABLE
+                + 1;
+        return ranges;
+    }
+
 }
\ No newline at end of file
@@ -5,30 +5,77 @@
 
 package ch.epfl.gameboj;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import ch.epfl.gameboj.component.Component;
 
 public final class Bus {
-    /** ArrayList containing components attached to the bus */
-    private final ArrayList<Component> attachedComp = new ArrayList<Component>();
+
+    private static final int PAGE_SIZE = 1 << Byte.SIZE;
+    private static final int PAGE_COUNT = 0x10000 / PAGE_SIZE;
+
+    /**
+     * for each page of 256 bytes, the components attached to the bus that
+     * cover at least one address of the page, in their order of attachment.
+     * The pages covered by the same components share the same array.
+     */
+    private final Component[][] pages = new Component[PAGE_COUNT][];
+
+    /**
+     * builds a bus to which no component is attached.
+     */
+    public Bus() {
+        Arrays.fill(pages, new Component[0]);
+    }
 
     /**
-     * attaches the given component to the bus.
+     * attaches the given component to the bus, for the pages covered by its
+     * address ranges.
      * 
      * @param component
      *            the component to be attached (must not be null)
      * @throws NullPointerException
      *             if the component is null
+     * @throws IllegalArgumentException
+     *             if the address ranges of the component are invalid
      */
     public void attach(Component component) {
-        attachedComp.add(Objects.requireNonNull(component));
+        Objects.requireNonNull(component);
+        int[] ranges = component.addressRanges();
+        Preconditions.checkArgument(ranges.length % 2 == 0);
+
+        boolean[] covered = new boolean[PAGE_COUNT];
+        for (int i = 0; i < ranges.length; i += 2) {
+            int start = ranges[i];
+            int end = ranges[i + 1];
+            Preconditions.checkArgument(
+                    start >= 0 && start <= end && end <= 0x10000);
+            for (int p = start / PAGE_SIZE; p * PAGE_SIZE < end; p++) {
+                covered[p] = true;
+            }
+        }
+
+        // pages which had the same components still share a single array
+        Map<Component[], Component[]> extendedPages = new IdentityHashMap<>();
+        for (int p = 0; p < PAGE_COUNT; p++) {
+            if (covered[p]) {
+                pages[p] = extendedPages.computeIfAbsent(pages[p], page -> {
+                    Component[] extended = Arrays.copyOf(page, page.length + 1);
+                    extended[page.length] = component;
+                    return extended;
+                });
+            }
+        }
     }
 
     /**
      * return the value stored at the given address if at least one component
-     * has a value at this address or return 0xFF if not.
+     * has a value at this address or return 0xFF if not. Only the components
+     * covering the page of the address are asked, and the first one of them
+     * having a value wins.
      * 
      * @param address
      *            the address to look for (must be a 16 bits value)
@@ -39,17 +86,53 @@ public final class Bus {
      */
     public int read(int address) {
         Preconditions.checkBits16(address);
-        for (Component c : attachedComp) {
-            if (c.read(address) != Component.NO_DATA) {
-                return c.read(address);
+        for (Component c : pages[address / PAGE_SIZE]) {
+            int data = c.read(address);
+            if (data != Component.NO_DATA) {
+                return data;
             }
         }
         return 0xFF;
     }
 
+    /**
+     * copies the values stored at the given number of consecutive addresses,
+     * which must all belong to the same page of 256 bytes, into the given
+     * array, from the given offset. The result is the same as the one of as
+     * many calls to read, but the first component of the page having a value
+     * at each of the addresses gives them all at once.
+     * 
+     * @param address
+     *            the first address (must be a 16 bits value)
+     * @param destination
+     *            the array
+     * @param offset
+     *            the offset of the first byte in the array
+     * @param length
+     *            the number of bytes to read
+     * @throws IllegalArgumentException
+     *             if the address is invalid or if the addresses do not all
+     *             belong to its page
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small
+     */
+    public void read(int address, byte[] destination, int offset, int length) {
+        Preconditions.checkBits16(address);
+        Preconditions.checkArgument(length >= 0
+                && address % PAGE_SIZE + length <= PAGE_SIZE);
+        Objects.checkFromIndexSize(offset, length, destination.length);
+
+        Component[] page = pages[address / PAGE_SIZE];
+        if (page.length > 0
+                && page[0].read(address, destination, offset, length))
+            return;
+        for (int i = 0; i < length; i++)
+            destination[offset + i] = (byte) read(address + i);
+    }
+
     /**
      * writes the given value at the given address for each component attached
-     * to the bus.
+     * to the bus and covering the page of the address.
      * 
      * @param address
      *            the address where to write (must be a 16 bits value)
@@ -62,7 +145,7 @@ public final class Bus {
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
-        for (Component c : attachedComp) {
+        for (Component c : pages[address / PAGE_SIZE]) {
             c.write(address, data);
         }
     }
@@ -0,0 +1,100 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * measures the number of accesses per second to the bus of a Game Boy, with
+ * all its components attached, at addresses drawn once for all from a fixed
+ * seed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class BusBenchmark {
+
+    private static final int ACCESSES_PER_INVOCATION = 4096;
+    private static final long SEED = 0x627573L;
+
+    private Bus bus;
+    // addresses anywhere in the address space, and in the memories only
+    private final int[] anyAddresses = new int[ACCESSES_PER_INVOCATION];
+    private final int[] ramAddresses = new int[ACCESSES_PER_INVOCATION];
+    private final int[] values = new int[ACCESSES_PER_INVOCATION];
+
+    @Setup
+    public void setUp() {
+        GameBoy gb = new GameBoy(Cartridge.ofRom(new Rom(new byte[0x8000])));
+        gb.bus().write(AddressMap.REG_BOOT_ROM_DISABLE, 1);
+        bus = gb.bus();
+
+        Random rng = new Random(SEED);
+        int[][] memories = new int[][] {
+                { AddressMap.VIDEO_RAM_START, AddressMap.VIDEO_RAM_END },
+                { AddressMap.WORK_RAM_START, AddressMap.WORK_RAM_END },
+                { AddressMap.HIGH_RAM_START, AddressMap.HIGH_RAM_END } };
+        for (int i = 0; i < ACCESSES_PER_INVOCATION; i++) {
+            anyAddresses[i] = rng.nextInt(0x10000);
+            int[] m = memories[rng.nextInt(memories.length)];
+            ramAddresses[i] = m[0] + rng.nextInt(m[1] - m[0]);
+            values[i] = rng.nextInt(0x100);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES_PER_INVOCATION)
+    public int readAnywhere() {
+        int acc = 0;
+        for (int a : anyAddresses)
+            acc += bus.read(a);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES_PER_INVOCATION)
+    public int readMemories() {
+        int acc = 0;
+        for (int a : ramAddresses)
+            acc += bus.read(a);
+        return acc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES_PER_INVOCATION)
+    public void writeMemories() {
+        for (int i = 0; i < ACCESSES_PER_INVOCATION; i++)
+            bus.write(ramAddresses[i], values[i]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES_PER_INVOCATION)
+    public int readWorkRamSequentially() {
+        int acc = 0;
+        for (int i = 0; i < ACCESSES_PER_INVOCATION; i++)
+            acc += bus.read(AddressMap.WORK_RAM_START + i);
+        return acc;
+    }
+}
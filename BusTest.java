@@ -0,0 +1,152 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class BusTest {
+
+    private static final class RangeComponent implements Component {
+        private final int start, end, value;
+        private int writings = 0;
+
+        RangeComponent(int start, int end, int value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+
+        @Override
+        public int read(int address) {
+            return address >= start && address < end ? value : NO_DATA;
+        }
+
+        @Override
+        public void write(int address, int data) {
+            if (address >= start && address < end)
+                writings++;
+        }
+
+        @Override
+        public int[] addressRanges() {
+            return new int[] { start, end };
+        }
+    }
+
+    @Test
+    void readReturnsFFForUnmappedAddress() {
+        Bus bus = new Bus();
+        bus.attach(new RangeComponent(0x1000, 0x2000, 1));
+        assertEquals(0xFF, bus.read(0x0FFF));
+        assertEquals(0xFF, bus.read(0x2000));
+        assertEquals(0xFF, bus.read(0xFFFF));
+    }
+
+    @Test
+    void firstAttachedComponentWins() {
+        Bus bus = new Bus();
+        bus.attach(new RangeComponent(0xFF40, 0xFF50, 1));
+        bus.attach(new RangeComponent(0xFF00, 0x10000, 2));
+        assertEquals(1, bus.read(0xFF40));
+        assertEquals(2, bus.read(0xFF3F));
+        assertEquals(2, bus.read(0xFF50));
+    }
+
+    @Test
+    void readSkipsComponentWithoutDataInSharedPage() {
+        Bus bus = new Bus();
+        bus.attach(new RangeComponent(0x8010, 0x8020, 1));
+        bus.attach(new RangeComponent(0x8000, 0x8100, 2));
+        assertEquals(2, bus.read(0x8000));
+        assertEquals(1, bus.read(0x8010));
+        assertEquals(2, bus.read(0x80FF));
+    }
+
+    @Test
+    void writeReachesAllComponentsCoveringAddress() {
+        Bus bus = new Bus();
+        RangeComponent c1 = new RangeComponent(0xC000, 0xE000, 1);
+        RangeComponent c2 = new RangeComponent(0xC000, 0xC001, 2);
+        RangeComponent c3 = new RangeComponent(0xE000, 0xFE00, 3);
+        bus.attach(c1);
+        bus.attach(c2);
+        bus.attach(c3);
+        bus.write(0xC000, 0x12);
+        bus.write(0xC001, 0x12);
+        assertEquals(2, c1.writings);
+        assertEquals(1, c2.writings);
+        assertEquals(0, c3.writings);
+    }
+
+    @Test
+    void componentWithDefaultRangesCoversWholeAddressSpace() {
+        Bus bus = new Bus();
+        Ram ram = new Ram(0x10);
+        bus.attach(new RamController(ram, 0x10));
+        bus.attach(new Component() {
+            @Override
+            public int read(int address) {
+                return 0x42;
+            }
+
+            @Override
+            public void write(int address, int data) {
+            }
+        });
+        bus.write(0x10, 7);
+        assertEquals(7, bus.read(0x10));
+        assertEquals(0x42, bus.read(0x20));
+        assertEquals(0x42, bus.read(0xFFFF));
+    }
+
+    @Test
+    void bulkReadGivesSameBytesAsReadingThemOneByOne() {
+        Bus bus = new Bus();
+        Ram ram = new Ram(0x200);
+        for (int i = 0; i < ram.size(); i++)
+            ram.write(i, (i * 7) & 0xFF);
+        bus.attach(new RangeComponent(0xC110, 0xC120, 1));
+        bus.attach(new RamController(ram, 0xC000));
+        bus.attach(new RangeComponent(0xC180, 0xC300, 2));
+
+        for (int page : new int[] { 0xC0, 0xC1, 0xC2 }) {
+            for (int start = 0; start < 0x100; start += 0x30) {
+                int length = Math.min(0xA0, 0x100 - start);
+                int address = (page << 8) + start;
+                byte[] bytes = new byte[length + 2];
+                bus.read(address, bytes, 1, length);
+                for (int i = 0; i < length; i++)
+                    assertEquals(bus.read(address + i),
+                            Byte.toUnsignedInt(bytes[i + 1]));
+            }
+        }
+    }
+
+    @Test
+    void bulkReadFailsForRangeCrossingPage() {
+        Bus bus = new Bus();
+        assertThrows(IllegalArgumentException.class,
+                () -> bus.read(0xC080, new byte[0xA0], 0, 0xA0));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> bus.read(0xC000, new byte[0x9F], 0, 0xA0));
+    }
+
+    @Test
+    void attachFailsForInvalidRanges() {
+        Bus bus = new Bus();
+        assertThrows(IllegalArgumentException.class,
+                () -> bus.attach(new RangeComponent(0x2000, 0x1000, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> bus.attach(new RangeComponent(0, 0x10001, 0)));
+    }
+}
@@ -12,15 +12,17 @@ import java.io.InputStream;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.memory.Rom;
 
 /**
  * represents a cartridge.
  */
-public final class Cartridge implements Component {
+public final class Cartridge implements Component, Stateful {
 
-    private final Component mbc;
+    private final MBC mbc;
 
     private static final int CARTRIDGE_TYPE = 0x147;
     
@@ -28,7 +30,7 @@ public final class Cartridge implements Component {
     private static final int[] SIZES_TAB = {0, 2048, 8192, 32768};
     
 
-    private Cartridge(Component mbc) {
+    private Cartridge(MBC mbc) {
         this.mbc = mbc;
     }
 
@@ -46,18 +48,34 @@ public final class Cartridge implements Component {
      * @return a cartridge whose ROM contains the bytes of the given file
      */
     public static Cartridge ofFile(File romFile) throws IOException {
-
         try (InputStream in = new FileInputStream(romFile)) {
-            byte[] b = in.readAllBytes();
-            Objects.checkIndex(b[CARTRIDGE_TYPE], 4);
-            Rom rom = new Rom(b);
-            
-            if (b[CARTRIDGE_TYPE] == 0)
-                return new Cartridge(new MBC0(rom));
-            else {
-                int size = Objects.checkIndex(b[RAM_SIZE], 4);
-                return new Cartridge(new MBC1(rom, SIZES_TAB[size]));
-            }
+            return ofRom(new Rom(in.readAllBytes()));
+        }
+    }
+
+    /**
+     * return a cartridge whose ROM is the given one. As a ROM is never
+     * modified, it can be shared by several cartridges.
+     * 
+     * @param rom
+     *            the ROM
+     * @throws NullPointerException
+     *             if the ROM is null
+     * @throws IndexOutOfBoundsException
+     *             if the ROM does not contain a value between 0 and 3 at the
+     *             position 0x147
+     * @throws IndexOutOfBoundsException
+     *             if the mbc is type 1, 2 or 3, and the ROM does not contain
+     *             a value between 0 and 3 at the position 0x149
+     * @return a cartridge whose ROM is the given one
+     */
+    public static Cartridge ofRom(Rom rom) {
+        int type = Objects.checkIndex(rom.read(CARTRIDGE_TYPE), 4);
+        if (type == 0)
+            return new Cartridge(new MBC0(rom));
+        else {
+            int size = Objects.checkIndex(rom.read(RAM_SIZE), 4);
+            return new Cartridge(new MBC1(rom, SIZES_TAB[size]));
         }
     }
 
@@ -72,6 +90,18 @@ public final class Cartridge implements Component {
         return mbc.read(address);
     }
 
+    @Override
+    /**
+     * checks the address and calls the mbc's corresponding method.
+     * 
+     * @param address the address of the first byte (must be a 16 bits value)
+     */
+    public boolean read(int address, byte[] destination, int offset,
+            int length) {
+        Preconditions.checkBits16(address);
+        return mbc.read(address, destination, offset, length);
+    }
+
     @Override
     /**
      * checks the arguments and calls the mbc's corresponding method.
@@ -85,4 +115,40 @@ public final class Cartridge implements Component {
         mbc.write(address, data);
     }
 
+    /**
+     * return the offset, in the rom, of the byte currently mapped at the given
+     * address, or -1 if the address is not mapped to the rom.
+     * 
+     * @param address
+     *            the address (must be a 16 bits value)
+     * @throws IllegalArgumentException
+     *             if the address is not a 16 bits value
+     * @return the offset in the rom of the byte mapped at the given address,
+     *         or -1 if there is none
+     */
+    public int romOffset(int address) {
+        return mbc.romOffset(address);
+    }
+
+    /**
+     * writes the state of the mbc, including the content of its ram.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        mbc.saveState(writer);
+    }
+
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        mbc.restoreState(reader);
+    }
+
+    /**
+     * return the address ranges of the mbc.
+     */
+    @Override
+    public int[] addressRanges() {
+        return mbc.addressRanges();
+    }
+
 }
\ No newline at end of file
@@ -14,4 +14,21 @@ public interface Clocked {
      *            the cycle
      */
     public abstract void cycle(long cycle);
+
+    /**
+     * return the first cycle, greater than or equal to the given one, during
+     * which the component may have something to do. The component does not
+     * need to be cycled before this cycle, as long as nothing else changes its
+     * state. By default, the given cycle, so that the component is cycled at
+     * every cycle.
+     * 
+     * @param cycle
+     *            the cycle from which to look for the next event
+     * @return the first cycle, greater than or equal to the given one, during
+     *         which the component may have something to do, or
+     *         Long.MAX_VALUE if there is none
+     */
+    public default long nextEventCycle(long cycle) {
+        return cycle;
+    }
 }
\ No newline at end of file
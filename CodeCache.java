@@ -0,0 +1,131 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * represents a cache of the instructions already decoded by the processor in
+ * the rom of the cartridge. The decoded instructions are stored by bank of the
+ * rom, and each of the two regions of the address space to which the rom is
+ * mapped is associated to the bank it currently shows. The entries never have
+ * to be invalidated, as the content of the rom never changes: a change of bank
+ * only changes the bank associated to a region, which must be updated by
+ * calling remap.
+ */
+final class CodeCache {
+
+    private static final int REGION_BITS = 14;
+    private static final int REGION_SIZE = 1 << REGION_BITS;
+    private static final int REGION_COUNT = 2;
+
+    private final IntUnaryOperator romOffsets;
+    private int[][] banks = new int[0][];
+    private final int[] regionBanks = new int[REGION_COUNT];
+    private final int[][] regions = new int[REGION_COUNT][];
+
+    /**
+     * builds a cache of decoded instructions for the rom whose offsets are
+     * given by the given function.
+     *
+     * @param romOffsets
+     *            the function associating to an address the offset in the rom
+     *            of the byte currently mapped at this address, or -1 if there
+     *            is none
+     * @throws NullPointerException
+     *             if the function is null
+     */
+    CodeCache(IntUnaryOperator romOffsets) {
+        this.romOffsets = Objects.requireNonNull(romOffsets);
+        remap();
+    }
+
+    /**
+     * associates to each region the bank of the rom it currently shows. A
+     * region which is not entirely mapped to a single bank of the rom, for
+     * example because the Boot Rom hides a part of it, is not associated to
+     * any bank and its instructions are not cached.
+     */
+    void remap() {
+        for (int r = 0; r < REGION_COUNT; r++) {
+            int start = romOffsets.applyAsInt(r * REGION_SIZE);
+            int last = romOffsets.applyAsInt((r + 1) * REGION_SIZE - 1);
+            if (start >= 0 && start % REGION_SIZE == 0
+                    && last == start + REGION_SIZE - 1) {
+                int bank = start / REGION_SIZE;
+                regionBanks[r] = bank;
+                regions[r] = bank < banks.length ? banks[bank] : null;
+            } else {
+                regionBanks[r] = -1;
+                regions[r] = null;
+            }
+        }
+    }
+
+    /**
+     * return true if and only if the instruction of the given length starting
+     * at the given address can be cached, hence is entirely located in a
+     * region associated to a bank of the rom.
+     *
+     * @param address
+     *            the address of the instruction
+     * @param length
+     *            the number of bytes of the instruction
+     * @return true if the instruction can be cached
+     */
+    boolean isCacheable(int address, int length) {
+        int r = address / REGION_SIZE;
+        return r < REGION_COUNT && regionBanks[r] >= 0
+                && address % REGION_SIZE + length <= REGION_SIZE;
+    }
+
+    /**
+     * return the decoded instruction stored for the given address, or 0 if the
+     * instruction at this address has not been decoded yet or can not be
+     * cached.
+     *
+     * @param address
+     *            the address
+     * @return the decoded instruction at the given address, or 0
+     */
+    int get(int address) {
+        int r = address >>> REGION_BITS;
+        if (r >= REGION_COUNT || regions[r] == null) {
+            return 0;
+        }
+        return regions[r][address & (REGION_SIZE - 1)];
+    }
+
+    /**
+     * stores the given decoded instruction for the given address, which must
+     * be cacheable. The entries of a bank are only allocated when the first
+     * instruction of the bank is stored.
+     *
+     * @param address
+     *            the address
+     * @param instruction
+     *            the decoded instruction (must not be 0)
+     */
+    void put(int address, int instruction) {
+        assert instruction != 0 && isCacheable(address, 1);
+        int r = address / REGION_SIZE;
+        if (regions[r] == null) {
+            int bank = regionBanks[r];
+            if (bank >= banks.length) {
+                banks = Arrays.copyOf(banks, bank + 1);
+            }
+            banks[bank] = new int[REGION_SIZE];
+            for (int i = 0; i < REGION_COUNT; i++) {
+                if (regionBanks[i] == bank) {
+                    regions[i] = banks[bank];
+                }
+            }
+        }
+        regions[r][address % REGION_SIZE] = instruction;
+    }
+}
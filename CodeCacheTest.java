@@ -0,0 +1,125 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.cartridge.MBC1;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+class CodeCacheTest {
+
+    private static final int BANK_SIZE = 0x4000;
+
+    // Calls the code at 0x4000 in bank 1, selects bank 2 and calls it again,
+    // then does the same with the code at 0xC000 in ram, modified between the
+    // two calls.
+    private static final int[] MAIN = new int[] {
+            0x31, 0xFE, 0xFF, // LD SP, 0xFFFE
+            0xCD, 0x00, 0x40, // CALL 0x4000
+            0x47,             // LD B, A
+            0x3E, 0x02,       // LD A, 2
+            0xEA, 0x00, 0x20, // LD [0x2000], A
+            0xCD, 0x00, 0x40, // CALL 0x4000
+            0x4F,             // LD C, A
+            0x21, 0x00, 0xC0, // LD HL, 0xC000
+            0x36, 0x3E,       // LD [HL], 0x3E
+            0x23,             // INC HL
+            0x36, 0x03,       // LD [HL], 3
+            0x23,             // INC HL
+            0x36, 0xC9,       // LD [HL], 0xC9
+            0xCD, 0x00, 0xC0, // CALL 0xC000
+            0x57,             // LD D, A
+            0x3E, 0x04,       // LD A, 4
+            0xEA, 0x01, 0xC0, // LD [0xC001], A
+            0xCD, 0x00, 0xC0, // CALL 0xC000
+            0x5F,             // LD E, A
+            0x76              // HALT
+    };
+
+    private static byte[] program() {
+        byte[] data = new byte[4 * BANK_SIZE];
+        for (int i = 0; i < MAIN.length; i++) {
+            data[i] = (byte) MAIN[i];
+        }
+        for (int bank = 1; bank < 4; bank++) {
+            data[bank * BANK_SIZE] = 0x3E; // LD A, bank
+            data[bank * BANK_SIZE + 1] = (byte) bank;
+            data[bank * BANK_SIZE + 2] = (byte) 0xC9; // RET
+        }
+        return data;
+    }
+
+    private static int[] run(boolean withCache) {
+        Bus bus = new Bus();
+        MBC1 mbc = new MBC1(new Rom(program()), 0);
+        mbc.attachTo(bus);
+        new RamController(new Ram(0x2000), 0xC000).attachTo(bus);
+        Cpu cpu = new Cpu();
+        cpu.attachTo(bus);
+        if (withCache) {
+            cpu.enableCodeCache(mbc::romOffset);
+        }
+
+        for (long c = 0; c < 1000; c++) {
+            cpu.cycle(c);
+        }
+        return cpu._testGetPcSpAFBCDEHL();
+    }
+
+    @Test
+    void cachedCodeFollowsBankSwitches() {
+        int[] regs = run(true);
+        assertEquals(1, regs[4]);
+        assertEquals(2, regs[5]);
+    }
+
+    @Test
+    void codeInRamIsNotCached() {
+        int[] regs = run(true);
+        assertEquals(3, regs[6]);
+        assertEquals(4, regs[7]);
+    }
+
+    @Test
+    void cacheDoesNotChangeExecution() {
+        int[] withoutCache = run(false);
+        int[] withCache = run(true);
+        for (int i = 0; i < withCache.length; i++) {
+            assertEquals(withoutCache[i], withCache[i]);
+        }
+    }
+
+    @Test
+    void cacheDoesNotChangeGameBoySimulation() {
+        byte[] data = program();
+        data[0x147] = 1; // MBC1 cartridge without ram
+        int[][] regs = new int[2][];
+        long[] cycles = new long[2];
+        for (int i = 0; i < 2; i++) {
+            GameBoy gb = new GameBoy(Cartridge.ofRom(new Rom(data)));
+            if (i == 1)
+                gb.enableCodeCache();
+            gb.bus().write(AddressMap.REG_BOOT_ROM_DISABLE, 1);
+            gb.runUntil(300_000);
+            regs[i] = gb.cpu()._testGetPcSpAFBCDEHL();
+            cycles[i] = gb.cycles();
+        }
+        assertEquals(cycles[0], cycles[1]);
+        for (int j = 0; j < regs[0].length; j++)
+            assertEquals(regs[0][j], regs[1][j]);
+        assertEquals(2, regs[1][5]);
+        assertEquals(4, regs[1][7]);
+    }
+}
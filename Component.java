@@ -5,6 +5,8 @@
 
 package ch.epfl.gameboj.component;
 
+import java.util.Objects;
+
 import ch.epfl.gameboj.Bus;
 
 public interface Component {
@@ -41,6 +43,55 @@ public interface Component {
      */
     public abstract void write(int address, int data);
 
+    /**
+     * copies the bytes stored by the component at the given number of
+     * consecutive addresses into the given array, from the given offset, and
+     * return true if the component has a value at each of these addresses.
+     * Otherwise, false is returned and the content of the array is
+     * unspecified. By default, the bytes are read one by one, but a component
+     * whose bytes are stored contiguously can copy them at once.
+     * 
+     * @param address
+     *            the first address (must be a value of 16 bits)
+     * @param destination
+     *            the array
+     * @param offset
+     *            the offset of the first byte in the array
+     * @param length
+     *            the number of bytes to read (the last address must be a
+     *            value of 16 bits)
+     * @throws IllegalArgumentException
+     *             if one of the addresses is invalid
+     * @throws IndexOutOfBoundsException
+     *             if the array is too small
+     * @return true if the component has a value at each of the addresses
+     */
+    public default boolean read(int address, byte[] destination, int offset,
+            int length) {
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        for (int i = 0; i < length; i++) {
+            int data = read(address + i);
+            if (data == NO_DATA)
+                return false;
+            destination[offset + i] = (byte) data;
+        }
+        return true;
+    }
+
+    /**
+     * return the address ranges covered by the component, in the form of an
+     * array containing successively the start (included) and the end
+     * (excluded) of each range. The bus only forwards to the component the
+     * readings and writings at the addresses included in one of these ranges,
+     * so the component must not have any value nor react to any writing
+     * outside of them. By default, the whole address space is covered.
+     * 
+     * @return the address ranges covered by the component
+     */
+    public default int[] addressRanges() {
+        return new int[] { 0, 0x10000 };
+    }
+
     /**
      * attaches the component to the given bus.
      * 
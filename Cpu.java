@@ -5,26 +5,31 @@
 
 package ch.epfl.gameboj.component.cpu;
 
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
-import ch.epfl.gameboj.RegisterFile;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.bits.Bit;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Alu.RotDir;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.AddressMap;
 import static ch.epfl.gameboj.AddressMap.HIGH_RAM_START;
 import static ch.epfl.gameboj.AddressMap.HIGH_RAM_END;
 
-public final class Cpu implements Component, Clocked {
+public final class Cpu implements Component, Clocked, Stateful {
 
     private Bus bus;
     private long nextNonIdleCycle = 0;
     
-    private static int prefix = 0xCB;
+    private static final int PREFIX = 0xCB;
 
     private final Ram highRam = new Ram(AddressMap.HIGH_RAM_SIZE);
 
@@ -38,7 +43,13 @@ public final class Cpu implements Component, Clocked {
         A, F, B, C, D, E, H, L
     }
 
-    private final RegisterFile<Reg> bench8 = new RegisterFile<>(Reg.values());
+    private static final Reg[] REGS = Reg.values();
+
+    /**
+     * the values of the 8 bits registers, indexed by the index of the
+     * registers, the pairs of registers being hence stored side by side
+     */
+    private final int[] regs = new int[REGS.length];
 
     private enum Reg16 implements Register {
         AF, BC, DE, HL
@@ -48,31 +59,115 @@ public final class Cpu implements Component, Clocked {
         V0, V1, ALU, CPU
     }
 
+    /**
+     * the operations whose flags are computed lazily. The last of them
+     * records its operands, and its flags are only computed by the alu when
+     * they are read, the register F being up to date when the operation is
+     * NONE.
+     */
+    private enum FlagOp {
+        NONE, ADD, SUB, INC, DEC, AND, OR, XOR
+    }
+
+    private FlagOp flagOp = FlagOp.NONE;
+    private int flagL;
+    private int flagR;
+    private boolean flagCarry;
+    private int flagResult;
+
     public enum Interrupt implements Bit {
         VBLANK, LCD_STAT, TIMER, SERIAL, JOYPAD
     }
     
-    private Reg[] extractRegTab = { Reg.B, Reg.C, Reg.D, Reg.E, Reg.H, Reg.L, null,
-            Reg.A };
-    
-    private Reg16[] extractReg16Tab = { Reg16.BC, Reg16.DE, Reg16.HL, Reg16.AF };
+    private static final Reg[] extractRegTab = { Reg.B, Reg.C, Reg.D, Reg.E,
+            Reg.H, Reg.L, null, Reg.A };
+
+    private static final Reg16[] extractReg16Tab = { Reg16.BC, Reg16.DE,
+            Reg16.HL, Reg16.AF };
+
+    /**
+     * represents an instruction whose operands have already been extracted
+     * from its opcode.
+     */
+    @FunctionalInterface
+    private interface Instruction {
+        /**
+         * executes the instruction on the given processor.
+         * 
+         * @param cpu
+         *            the processor
+         * @param nextPC
+         *            the address of the instruction following this one
+         * @return the address of the next instruction to execute
+         */
+        int execute(Cpu cpu, int nextPC);
+    }
+
+    /**
+     * the opcodes and their instructions, indexed by the encoding of the
+     * opcode for the direct ones, and by 256 plus the encoding of the opcode
+     * for the prefixed ones
+     */
+    private static final Opcode[] OPCODE_TABLE = buildOpcodeTable();
+
+    private static final Instruction[] INSTRUCTION_TABLE = buildInstructionTable(
+            OPCODE_TABLE);
+
+    private static final int PREFIXED_INDEX_START = 256;
+
+    /**
+     * the families of the instructions which end a block of instructions, as
+     * they can change the control flow
+     */
+    private static final Set<Opcode.Family> BLOCK_END_FAMILIES = EnumSet.of(
+            Opcode.Family.JP_HL, Opcode.Family.JP_N16, Opcode.Family.JP_CC_N16,
+            Opcode.Family.JR_E8, Opcode.Family.JR_CC_E8,
+            Opcode.Family.CALL_N16, Opcode.Family.CALL_CC_N16,
+            Opcode.Family.RST_U3, Opcode.Family.RET, Opcode.Family.RET_CC,
+            Opcode.Family.RETI, Opcode.Family.HALT, Opcode.Family.STOP);
+
+    private static final int MAX_BLOCK_LENGTH = 64;
 
-    private static final Opcode[] DIRECT_OPCODE_TABLE = buildOpcodeTable(
-            Opcode.Kind.DIRECT);
+    /**
+     * a fetched instruction packs the index of its opcode in the tables above,
+     * from the bit 16, and its operand in its 16 lsb. The bit 25 is always set
+     * so that a fetched instruction is never 0.
+     */
+    private static final int FETCHED = 1 << 25;
+    private static final int INDEX_START = 16;
+    private static final int INDEX_MASK = (1 << 9) - 1;
 
-    private static final Opcode[] PREFIXED_OPCODE_TABLE = buildOpcodeTable(
-            Opcode.Kind.PREFIXED);
+    private CodeCache codeCache = null;
+    private int operand = 0;
 
-    private static Opcode[] buildOpcodeTable(Opcode.Kind k) {
-        Opcode[] table = new Opcode[256];
+    private static Opcode[] buildOpcodeTable() {
+        Opcode[] table = new Opcode[2 * PREFIXED_INDEX_START];
         for (Opcode o : Opcode.values()) {
-            if (o.kind == k) {
+            if (o.kind == Opcode.Kind.DIRECT) {
                 table[o.encoding] = o;
+            } else {
+                table[PREFIXED_INDEX_START + o.encoding] = o;
             }
         }
         return table;
     }
 
+    /**
+     * enables the cache of the instructions decoded in the rom of the
+     * cartridge. The instructions read elsewhere, for example in ram, are
+     * never cached.
+     * 
+     * @param romOffsets
+     *            the function associating to an address the offset in the rom
+     *            of the byte currently mapped at this address, or -1 if the
+     *            address is not mapped to the rom
+     * @throws NullPointerException
+     *             if the function is null
+     */
+    public void enableCodeCache(IntUnaryOperator romOffsets) {
+        codeCache = new CodeCache(romOffsets);
+    }
+
     /**
      * Determines if the cpu needs to do something during the given cycle, and
      * if so, calls the method reallyCycle.
@@ -91,6 +186,20 @@ public final class Cpu implements Component, Clocked {
         }
     }
 
+    /**
+     * return the cycle during which the next instruction will be executed, or
+     * the given cycle if the processor is halted and an interruption is
+     * waiting.
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if ((nextNonIdleCycle == Long.MAX_VALUE)
+                && (interruptionNumber() >= 0)) {
+            return cycle;
+        }
+        return Math.max(cycle, nextNonIdleCycle);
+    }
+
     /**
      * checks if the interruptions are activated and if an interruption is
      * waiting, in which case it manages this interruption. Otherwise it
@@ -108,500 +217,764 @@ public final class Cpu implements Component, Clocked {
             PC = AddressMap.INTERRUPTS[i];
             nextNonIdleCycle += 5;
         } else {
-            dispatch(read8(PC) == prefix ? PREFIXED_OPCODE_TABLE[read8AfterOpcode()] : DIRECT_OPCODE_TABLE[read8(PC)]);
+            execute(codeCache == null ? fetch(PC) : fetchCached());
         }
     }
 
-    private void dispatch(Opcode op) {
-        boolean condition = false;
-        boolean halt = false;
-        int PC2 = PC + op.totalBytes;
+    /**
+     * reads from the bus the instruction at the given address, that is its
+     * opcode and its operand, which are packed in an integer.
+     * 
+     * @param address
+     *            the address
+     * @return the fetched instruction
+     */
+    private int fetch(int address) {
+        int index = read8(address);
+        int operand = 0;
+        if (index == PREFIX) {
+            assert address < 0xFFFF;
+            index = PREFIXED_INDEX_START + read8(address + 1);
+        } else if (OPCODE_TABLE[index] != null) {
+            switch (OPCODE_TABLE[index].totalBytes) {
+            case 2:
+                assert address < 0xFFFF;
+                operand = read8(address + 1);
+                break;
+            case 3:
+                assert address < 0xFFFE;
+                operand = read16(address + 1);
+                break;
+            }
+        }
+        return FETCHED | (index << INDEX_START) | operand;
+    }
+
+    /**
+     * return the instruction at the address contained in PC, taken from the
+     * cache if it is located in the rom. If it is not in the cache yet, the
+     * block of instructions starting at this address is decoded and cached.
+     * 
+     * @return the fetched instruction
+     */
+    private int fetchCached() {
+        int instruction = codeCache.get(PC);
+        if (instruction == 0) {
+            cacheBlock(PC);
+            instruction = codeCache.get(PC);
+        }
+        return instruction != 0 ? instruction : fetch(PC);
+    }
+
+    /**
+     * decodes and caches the instructions starting at the given address, until
+     * an instruction changing the control flow, an instruction already cached
+     * or an instruction which can not be cached is met.
+     * 
+     * @param address
+     *            the address of the first instruction of the block
+     */
+    private void cacheBlock(int address) {
+        for (int i = 0; i < MAX_BLOCK_LENGTH
+                && codeCache.isCacheable(address, 1)
+                && codeCache.get(address) == 0; i++) {
+            int instruction = fetch(address);
+            Opcode op = OPCODE_TABLE[(instruction >>> INDEX_START)
+                    & INDEX_MASK];
+            if (op == null || !codeCache.isCacheable(address, op.totalBytes)) {
+                return;
+            }
+            codeCache.put(address, instruction);
+            if (BLOCK_END_FAMILIES.contains(op.family)) {
+                return;
+            }
+            address += op.totalBytes;
+        }
+    }
+
+    /**
+     * executes the given fetched instruction, adding its number of cycles to
+     * the next non idle cycle.
+     * 
+     * @param instruction
+     *            the fetched instruction
+     */
+    private void execute(int instruction) {
+        int index = (instruction >>> INDEX_START) & INDEX_MASK;
+        Opcode op = OPCODE_TABLE[index];
+        operand = instruction & 0xFFFF;
+        PC = INSTRUCTION_TABLE[index].execute(this, PC + op.totalBytes);
+        if (nextNonIdleCycle != Long.MAX_VALUE) {
+            nextNonIdleCycle += op.cycles;
+        }
+    }
+
+    /**
+     * builds the instructions corresponding to the given opcodes, at the same
+     * indexes.
+     * 
+     * @param opcodes
+     *            the opcodes, some of which may be null
+     * @return the instructions corresponding to the given opcodes
+     */
+    private static Instruction[] buildInstructionTable(Opcode[] opcodes) {
+        Instruction[] table = new Instruction[opcodes.length];
+        for (int i = 0; i < opcodes.length; i++) {
+            if (opcodes[i] != null) {
+                table[i] = decode(opcodes[i]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * builds the instruction corresponding to the given opcode, whose
+     * operands (registers, conditions, bit indexes...) are extracted once and
+     * for all from the encoding of the opcode.
+     * 
+     * @param op
+     *            the opcode
+     * @return the instruction corresponding to the opcode
+     */
+    private static Instruction decode(Opcode op) {
         switch (op.family) {
         case NOP: {
+            return (cpu, nextPC) -> nextPC;
         }
-            break;
         case LD_R8_HLR: {
-            bench8.set(extractReg(op, 3), read8AtHl());
+            Reg r = extractReg(op, 3);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.read8AtHl());
+                return nextPC;
+            };
         }
-            break;
         case LD_A_HLRU: {
-            bench8.set(Reg.A, read8AtHl());
-            setReg16(Reg16.HL,
-                    Bits.clip(16, reg16(Reg16.HL) + extractHlIncrement(op)));
+            int increment = extractHlIncrement(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8AtHl());
+                cpu.setReg16(Reg16.HL,
+                        Bits.clip(16, cpu.reg16(Reg16.HL) + increment));
+                return nextPC;
+            };
         }
-            break;
         case LD_A_N8R: {
-            bench8.set(Reg.A,
-                    read8(AddressMap.REGS_START + read8AfterOpcode()));
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(
+                        AddressMap.REGS_START + cpu.read8AfterOpcode()));
+                return nextPC;
+            };
         }
-            break;
         case LD_A_CR: {
-            bench8.set(Reg.A, read8(AddressMap.REGS_START + bench8.get(Reg.C)));
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(
+                        AddressMap.REGS_START + cpu.reg(Reg.C)));
+                return nextPC;
+            };
         }
-            break;
         case LD_A_N16R: {
-            bench8.set(Reg.A, read8(read16AfterOpcode()));
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(cpu.read16AfterOpcode()));
+                return nextPC;
+            };
         }
-            break;
         case LD_A_BCR: {
-            bench8.set(Reg.A, read8(reg16(Reg16.BC)));
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(cpu.reg16(Reg16.BC)));
+                return nextPC;
+            };
         }
-            break;
         case LD_A_DER: {
-            bench8.set(Reg.A, read8(reg16(Reg16.DE)));
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.read8(cpu.reg16(Reg16.DE)));
+                return nextPC;
+            };
         }
-            break;
         case LD_R8_N8: {
-            bench8.set(extractReg(op, 3), read8AfterOpcode());
+            Reg r = extractReg(op, 3);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.read8AfterOpcode());
+                return nextPC;
+            };
         }
-            break;
         case LD_R16SP_N16: {
-            setReg16SP(extractReg16(op), read16AfterOpcode());
+            Reg16 r = extractReg16(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg16SP(r, cpu.read16AfterOpcode());
+                return nextPC;
+            };
         }
-            break;
         case POP_R16: {
-            setReg16(extractReg16(op), pop16());
+            Reg16 r = extractReg16(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg16(r, cpu.pop16());
+                return nextPC;
+            };
         }
-            break;
         case LD_HLR_R8: {
-            write8AtHl(bench8.get(extractReg(op, 0)));
+            Reg s = extractReg(op, 0);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.reg(s));
+                return nextPC;
+            };
         }
-            break;
         case LD_HLRU_A: {
-            write8AtHl(bench8.get(Reg.A));
-            setReg16(Reg16.HL,
-                    Bits.clip(16, reg16(Reg16.HL) + extractHlIncrement(op)));
+            int increment = extractHlIncrement(op);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.reg(Reg.A));
+                cpu.setReg16(Reg16.HL,
+                        Bits.clip(16, cpu.reg16(Reg16.HL) + increment));
+                return nextPC;
+            };
         }
-            break;
         case LD_N8R_A: {
-            write8(AddressMap.REGS_START + read8AfterOpcode(),
-                    bench8.get(Reg.A));
+            return (cpu, nextPC) -> {
+                cpu.write8(AddressMap.REGS_START + cpu.read8AfterOpcode(),
+                        cpu.reg(Reg.A));
+                return nextPC;
+            };
         }
-            break;
         case LD_CR_A: {
-            write8(AddressMap.REGS_START + bench8.get(Reg.C),
-                    bench8.get(Reg.A));
+            return (cpu, nextPC) -> {
+                cpu.write8(AddressMap.REGS_START + cpu.reg(Reg.C),
+                        cpu.reg(Reg.A));
+                return nextPC;
+            };
         }
-            break;
         case LD_N16R_A: {
-            write8(read16AfterOpcode(), bench8.get(Reg.A));
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.read16AfterOpcode(), cpu.reg(Reg.A));
+                return nextPC;
+            };
         }
-            break;
         case LD_BCR_A: {
-            write8(reg16(Reg16.BC), bench8.get(Reg.A));
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.reg16(Reg16.BC), cpu.reg(Reg.A));
+                return nextPC;
+            };
         }
-            break;
         case LD_DER_A: {
-            write8(reg16(Reg16.DE), bench8.get(Reg.A));
+            return (cpu, nextPC) -> {
+                cpu.write8(cpu.reg16(Reg16.DE), cpu.reg(Reg.A));
+                return nextPC;
+            };
         }
-            break;
         case LD_HLR_N8: {
-            write8AtHl(read8AfterOpcode());
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.read8AfterOpcode());
+                return nextPC;
+            };
         }
-            break;
         case LD_N16R_SP: {
-            write16(read16AfterOpcode(), SP);
+            return (cpu, nextPC) -> {
+                cpu.write16(cpu.read16AfterOpcode(), cpu.SP);
+                return nextPC;
+            };
         }
-            break;
         case LD_R8_R8: {
             Reg r = extractReg(op, 3);
             Reg s = extractReg(op, 0);
-            if (r != s) {
-                bench8.set(r, bench8.get(s));
+            if (r == s) {
+                return (cpu, nextPC) -> nextPC;
             }
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.reg(s));
+                return nextPC;
+            };
         }
-            break;
         case LD_SP_HL: {
-            SP = reg16(Reg16.HL);
+            return (cpu, nextPC) -> {
+                cpu.SP = cpu.reg16(Reg16.HL);
+                return nextPC;
+            };
         }
-            break;
         case PUSH_R16: {
-            push16(reg16(extractReg16(op)));
+            Reg16 r = extractReg16(op);
+            return (cpu, nextPC) -> {
+                cpu.push16(cpu.reg16(r));
+                return nextPC;
+            };
         }
-            break;
 
         // Add
         case ADD_A_R8: {
-            int vf = Alu.add(bench8.get(Reg.A), bench8.get(extractReg(op, 0)),
-                    carryASH(op, true));
-            setRegFlags(Reg.A, vf);
+            Reg s = extractReg(op, 0);
+            boolean withCarry = extractCarryUse(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.add8(cpu.reg(Reg.A),
+                        cpu.reg(s), cpu.carry(withCarry)));
+                return nextPC;
+            };
         }
-            break;
         case ADD_A_N8: {
-            int vf = Alu.add(bench8.get(Reg.A), read8AfterOpcode(),
-                    carryASH(op, true));
-            setRegFlags(Reg.A, vf);
+            boolean withCarry = extractCarryUse(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.add8(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode(), cpu.carry(withCarry)));
+                return nextPC;
+            };
         }
-            break;
         case ADD_A_HLR: {
-            int vf = Alu.add(bench8.get(Reg.A), read8AtHl(),
-                    carryASH(op, true));
-            setRegFlags(Reg.A, vf);
+            boolean withCarry = extractCarryUse(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.add8(cpu.reg(Reg.A),
+                        cpu.read8AtHl(), cpu.carry(withCarry)));
+                return nextPC;
+            };
         }
-            break;
         case INC_R8: {
             Reg r = extractReg(op, 3);
-            int vf = Alu.add(bench8.get(r), 1);
-            setRegFromAlu(r, vf);
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.CPU);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.inc8(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case INC_HLR: {
-            int vf = Alu.add(read8AtHl(), 1);
-            write8AtHl(Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.CPU);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.inc8(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case INC_R16SP: {
             Reg16 r = extractReg16(op);
-            incrementReg16SP(r);
+            return (cpu, nextPC) -> {
+                cpu.incrementReg16SP(r);
+                return nextPC;
+            };
         }
-            break;
         case ADD_HL_R16SP: {
-            int vf = Alu.add16H(reg16(Reg16.HL), reg16SP(extractReg16(op)));
-            setReg16(Reg16.HL, Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.ALU);
+            Reg16 r = extractReg16(op);
+            return (cpu, nextPC) -> {
+                int vf = Alu.add16H(cpu.reg16(Reg16.HL), cpu.reg16SP(r));
+                cpu.setReg16(Reg16.HL, Alu.unpackValue(vf));
+                cpu.combineAluFlags(vf, FlagSrc.CPU, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.ALU);
+                return nextPC;
+            };
         }
-            break;
         case LD_HLSP_S8: {
-            int e = Bits.clip(16, readExtend8(read8AfterOpcode()));
-            int vf = Alu.add16L(SP, e);
-            combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU,
-                    FlagSrc.ALU);
-            int v = Alu.unpackValue(vf);
             Reg16 r = Bits.test(op.encoding, 4) ? Reg16.HL : Reg16.AF;
-            setReg16SP(r, v);
+            return (cpu, nextPC) -> {
+                int e = Bits.clip(16, cpu.readExtend8(cpu.read8AfterOpcode()));
+                int vf = Alu.add16L(cpu.SP, e);
+                cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU,
+                        FlagSrc.ALU);
+                cpu.setReg16SP(r, Alu.unpackValue(vf));
+                return nextPC;
+            };
         }
-            break;
 
         // Subtract
         case SUB_A_R8: {
-            int vf = Alu.sub(bench8.get(Reg.A), bench8.get(extractReg(op, 0)),
-                    carryASH(op, true));
-            setRegFlags(Reg.A, vf);
+            Reg s = extractReg(op, 0);
+            boolean withCarry = extractCarryUse(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.sub8(cpu.reg(Reg.A),
+                        cpu.reg(s), cpu.carry(withCarry)));
+                return nextPC;
+            };
         }
-            break;
         case SUB_A_N8: {
-            int vf = Alu.sub(bench8.get(Reg.A), read8AfterOpcode(),
-                    carryASH(op, true));
-            setRegFlags(Reg.A, vf);
+            boolean withCarry = extractCarryUse(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.sub8(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode(), cpu.carry(withCarry)));
+                return nextPC;
+            };
         }
-            break;
         case SUB_A_HLR: {
-            int vf = Alu.sub(bench8.get(Reg.A), read8AtHl(),
-                    carryASH(op, true));
-            setRegFlags(Reg.A, vf);
+            boolean withCarry = extractCarryUse(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.sub8(cpu.reg(Reg.A),
+                        cpu.read8AtHl(), cpu.carry(withCarry)));
+                return nextPC;
+            };
         }
-            break;
         case DEC_R8: {
             Reg r = extractReg(op, 3);
-            int vf = Alu.sub(bench8.get(r), 1);
-            setRegFromAlu(r, vf);
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
-                    FlagSrc.CPU);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, cpu.dec8(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case DEC_HLR: {
-            int vf = Alu.sub(read8AtHl(), 1);
-            write8AtHl(Alu.unpackValue(vf));
-            combineAluFlags(vf, FlagSrc.ALU, FlagSrc.V1, FlagSrc.ALU,
-                    FlagSrc.CPU);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(cpu.dec8(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case CP_A_R8: {
-            int vf = Alu.sub(bench8.get(Reg.A), bench8.get(extractReg(op, 0)));
-            setFlags(vf);
+            Reg s = extractReg(op, 0);
+            return (cpu, nextPC) -> {
+                cpu.sub8(cpu.reg(Reg.A), cpu.reg(s), false);
+                return nextPC;
+            };
         }
-            break;
         case CP_A_N8: {
-            int vf = Alu.sub(bench8.get(Reg.A), read8AfterOpcode());
-            setFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.sub8(cpu.reg(Reg.A), cpu.read8AfterOpcode(),
+                        false);
+                return nextPC;
+            };
         }
-            break;
         case CP_A_HLR: {
-            int vf = Alu.sub(bench8.get(Reg.A), read8AtHl());
-            setFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.sub8(cpu.reg(Reg.A), cpu.read8AtHl(), false);
+                return nextPC;
+            };
         }
-            break;
         case DEC_R16SP: {
             Reg16 r = extractReg16(op);
-            decrementReg16SP(r);
+            return (cpu, nextPC) -> {
+                cpu.decrementReg16SP(r);
+                return nextPC;
+            };
         }
-            break;
 
         // And, or, xor, complement
         case AND_A_N8: {
-            int vf = Alu.and(bench8.get(Reg.A), read8AfterOpcode());
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.and8(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode()));
+                return nextPC;
+            };
         }
-            break;
         case AND_A_R8: {
-            int vf = Alu.and(bench8.get(Reg.A), bench8.get(extractReg(op, 0)));
-            setRegFlags(Reg.A, vf);
+            Reg s = extractReg(op, 0);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.and8(cpu.reg(Reg.A), cpu.reg(s)));
+                return nextPC;
+            };
         }
-            break;
         case AND_A_HLR: {
-            int vf = Alu.and(bench8.get(Reg.A), read8AtHl());
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.and8(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case OR_A_R8: {
-            int vf = Alu.or(bench8.get(Reg.A), bench8.get(extractReg(op, 0)));
-            setRegFlags(Reg.A, vf);
+            Reg s = extractReg(op, 0);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.or8(cpu.reg(Reg.A), cpu.reg(s)));
+                return nextPC;
+            };
         }
-            break;
         case OR_A_N8: {
-            int vf = Alu.or(bench8.get(Reg.A), read8AfterOpcode());
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.or8(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode()));
+                return nextPC;
+            };
         }
-            break;
         case OR_A_HLR: {
-            int vf = Alu.or(bench8.get(Reg.A), read8AtHl());
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.or8(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case XOR_A_R8: {
-            int vf = Alu.xor(bench8.get(Reg.A), bench8.get(extractReg(op, 0)));
-            setRegFlags(Reg.A, vf);
+            Reg s = extractReg(op, 0);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.xor8(cpu.reg(Reg.A), cpu.reg(s)));
+                return nextPC;
+            };
         }
-            break;
         case XOR_A_N8: {
-            int vf = Alu.xor(bench8.get(Reg.A), read8AfterOpcode());
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, cpu.xor8(cpu.reg(Reg.A),
+                        cpu.read8AfterOpcode()));
+                return nextPC;
+            };
         }
-            break;
         case XOR_A_HLR: {
-            int vf = Alu.xor(bench8.get(Reg.A), read8AtHl());
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A,
+                        cpu.xor8(cpu.reg(Reg.A), cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case CPL: {
-            bench8.set(Reg.A, Bits.complement8(bench8.get(Reg.A)));
-            combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1,
-                    FlagSrc.CPU);
+            return (cpu, nextPC) -> {
+                cpu.setReg(Reg.A, Bits.complement8(cpu.reg(Reg.A)));
+                cpu.combineAluFlags(0, FlagSrc.CPU, FlagSrc.V1, FlagSrc.V1,
+                        FlagSrc.CPU);
+                return nextPC;
+            };
         }
-            break;
 
         // Rotate, shift
         case ROTCA: {
             RotDir d = extractDirRot(op);
-            int vf = Alu.rotate(d, bench8.get(Reg.A));
-            setRegFromAlu(Reg.A, vf);
-            combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
-                    FlagSrc.ALU);
+            return (cpu, nextPC) -> {
+                int vf = Alu.rotate(d, cpu.reg(Reg.A));
+                cpu.setRegFromAlu(Reg.A, vf);
+                cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return nextPC;
+            };
         }
-            break;
         case ROTA: {
             RotDir d = extractDirRot(op);
-            int vf = Alu.rotate(d, bench8.get(Reg.A),
-                    bench8.testBit(Reg.F, Alu.Flag.C));
-            setRegFromAlu(Reg.A, vf);
-            combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
-                    FlagSrc.ALU);
+            return (cpu, nextPC) -> {
+                int vf = Alu.rotate(d, cpu.reg(Reg.A),
+                        cpu.testFlag(Alu.Flag.C));
+                cpu.setRegFromAlu(Reg.A, vf);
+                cpu.combineAluFlags(vf, FlagSrc.V0, FlagSrc.V0, FlagSrc.V0,
+                        FlagSrc.ALU);
+                return nextPC;
+            };
         }
-            break;
         case ROTC_R8: {
             Reg r = extractReg(op, 0);
             RotDir d = extractDirRot(op);
-            int vf = Alu.rotate(d, bench8.get(r));
-            setRegFlags(r, vf);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.rotate(d, cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case ROT_R8: {
             Reg r = extractReg(op, 0);
             RotDir d = extractDirRot(op);
-            int vf = Alu.rotate(d, bench8.get(r),
-                    bench8.testBit(Reg.F, Alu.Flag.C));
-            setRegFlags(r, vf);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.rotate(d, cpu.reg(r),
+                        cpu.testFlag(Alu.Flag.C)));
+                return nextPC;
+            };
         }
-            break;
         case ROTC_HLR: {
             RotDir d = extractDirRot(op);
-            int vf = Alu.rotate(d, read8AtHl());
-            write8AtHlAndSetFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.rotate(d, cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case ROT_HLR: {
             RotDir d = extractDirRot(op);
-            int vf = Alu.rotate(d, read8AtHl(),
-                    bench8.testBit(Reg.F, Alu.Flag.C));
-            write8AtHlAndSetFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.rotate(d, cpu.read8AtHl(),
+                        cpu.testFlag(Alu.Flag.C)));
+                return nextPC;
+            };
         }
-            break;
         case SWAP_R8: {
             Reg r = extractReg(op, 0);
-            int vf = Alu.swap(bench8.get(r));
-            setRegFlags(r, vf);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.swap(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case SWAP_HLR: {
-            int vf = Alu.swap(read8AtHl());
-            write8AtHlAndSetFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.swap(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case SLA_R8: {
             Reg r = extractReg(op, 0);
-            int vf = Alu.shiftLeft(bench8.get(r));
-            setRegFlags(r, vf);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.shiftLeft(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case SRA_R8: {
             Reg r = extractReg(op, 0);
-            int vf = Alu.shiftRightA(bench8.get(r));
-            setRegFlags(r, vf);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.shiftRightA(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case SRL_R8: {
             Reg r = extractReg(op, 0);
-            int vf = Alu.shiftRightL(bench8.get(r));
-            setRegFlags(r, vf);
+            return (cpu, nextPC) -> {
+                cpu.setRegFlags(r, Alu.shiftRightL(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case SLA_HLR: {
-            int vf = Alu.shiftLeft(read8AtHl());
-            write8AtHlAndSetFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.shiftLeft(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case SRA_HLR: {
-            int vf = Alu.shiftRightA(read8AtHl());
-            write8AtHlAndSetFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.shiftRightA(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
         case SRL_HLR: {
-            int vf = Alu.shiftRightL(read8AtHl());
-            write8AtHlAndSetFlags(vf);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHlAndSetFlags(Alu.shiftRightL(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
 
         // Bit test and set
         case BIT_U3_R8: {
-            int f = Alu.testBit(bench8.get(extractReg(op, 0)),
-                    extractIndexBRS(op));
-            combineAluFlags(f, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
-                    FlagSrc.CPU);
+            Reg s = extractReg(op, 0);
+            int index = extractIndexBRS(op);
+            return (cpu, nextPC) -> {
+                int f = Alu.testBit(cpu.reg(s), index);
+                cpu.combineAluFlags(f, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
+                        FlagSrc.CPU);
+                return nextPC;
+            };
         }
-            break;
         case BIT_U3_HLR: {
-            int f = Alu.testBit(read8AtHl(), extractIndexBRS(op));
-            combineAluFlags(f, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
-                    FlagSrc.CPU);
+            int index = extractIndexBRS(op);
+            return (cpu, nextPC) -> {
+                int f = Alu.testBit(cpu.read8AtHl(), index);
+                cpu.combineAluFlags(f, FlagSrc.ALU, FlagSrc.V0, FlagSrc.V1,
+                        FlagSrc.CPU);
+                return nextPC;
+            };
         }
-            break;
         case CHG_U3_R8: {
             Reg r = extractReg(op, 0);
-            bench8.set(r, SetOrRes(op, extractIndexBRS(op), bench8.get(r)));
+            IntUnaryOperator change = extractSetOrRes(op);
+            return (cpu, nextPC) -> {
+                cpu.setReg(r, change.applyAsInt(cpu.reg(r)));
+                return nextPC;
+            };
         }
-            break;
         case CHG_U3_HLR: {
-            write8AtHl(SetOrRes(op, extractIndexBRS(op), read8AtHl()));
+            IntUnaryOperator change = extractSetOrRes(op);
+            return (cpu, nextPC) -> {
+                cpu.write8AtHl(change.applyAsInt(cpu.read8AtHl()));
+                return nextPC;
+            };
         }
-            break;
 
         // Misc. ALU
         case DAA: {
-            int vf = Alu.bcdAdjust(bench8.get(Reg.A), testFlag(Alu.Flag.N),
-                    testFlag(Alu.Flag.H), testFlag(Alu.Flag.C));
-            setRegFlags(Reg.A, vf);
+            return (cpu, nextPC) -> {
+                int vf = Alu.bcdAdjust(cpu.reg(Reg.A),
+                        cpu.testFlag(Alu.Flag.N), cpu.testFlag(Alu.Flag.H),
+                        cpu.testFlag(Alu.Flag.C));
+                cpu.setRegFlags(Reg.A, vf);
+                return nextPC;
+            };
         }
-            break;
         case SCCF: {
-            bench8.setBit(Reg.F, Alu.Flag.C, carryASH(op, false));
-            bench8.setBit(Reg.F, Alu.Flag.N, false);
-            bench8.setBit(Reg.F, Alu.Flag.H, false);
+            boolean complement = Bits.test(op.encoding, 3);
+            return (cpu, nextPC) -> {
+                boolean c = !(complement && cpu.testFlag(Alu.Flag.C));
+                cpu.combineAluFlags(Alu.maskZNHC(false, false, false, c),
+                        FlagSrc.CPU, FlagSrc.V0, FlagSrc.V0, FlagSrc.ALU);
+                return nextPC;
+            };
         }
-            break;
 
         // Jumps
         case JP_HL: {
-            PC2 = reg16(Reg16.HL);
+            return (cpu, nextPC) -> cpu.reg16(Reg16.HL);
         }
-            break;
         case JP_N16: {
-            PC2 = read16AfterOpcode();
+            return (cpu, nextPC) -> cpu.read16AfterOpcode();
         }
-            break;
         case JP_CC_N16: {
-            if (extractCondition(op)) {
-                condition = true;
-                PC2 = read16AfterOpcode();
-            }
+            int condition = extractCondition(op);
+            int additionalCycles = op.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.testCondition(condition)) {
+                    cpu.nextNonIdleCycle += additionalCycles;
+                    return cpu.read16AfterOpcode();
+                }
+                return nextPC;
+            };
         }
-            break;
         case JR_E8: {
-            PC2 = Bits.clip(16, PC2 + readExtend8(read8AfterOpcode()));
+            return (cpu, nextPC) -> Bits.clip(16,
+                    nextPC + cpu.readExtend8(cpu.read8AfterOpcode()));
         }
-            break;
         case JR_CC_E8: {
-            if (extractCondition(op)) {
-                condition = true;
-                PC2 = Bits.clip(16, PC2 + readExtend8(read8AfterOpcode()));
-            }
+            int condition = extractCondition(op);
+            int additionalCycles = op.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.testCondition(condition)) {
+                    cpu.nextNonIdleCycle += additionalCycles;
+                    return Bits.clip(16,
+                            nextPC + cpu.readExtend8(cpu.read8AfterOpcode()));
+                }
+                return nextPC;
+            };
         }
-            break;
 
         // Calls and returns
         case CALL_N16: {
-            push16(PC2);
-            PC2 = read16AfterOpcode();
+            return (cpu, nextPC) -> {
+                cpu.push16(nextPC);
+                return cpu.read16AfterOpcode();
+            };
         }
-            break;
         case CALL_CC_N16: {
-            if (extractCondition(op)) {
-                condition = true;
-                push16(PC2);
-                PC2 = read16AfterOpcode();
-            }
+            int condition = extractCondition(op);
+            int additionalCycles = op.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.testCondition(condition)) {
+                    cpu.nextNonIdleCycle += additionalCycles;
+                    cpu.push16(nextPC);
+                    return cpu.read16AfterOpcode();
+                }
+                return nextPC;
+            };
         }
-            break;
         case RST_U3: {
-            push16(PC2);
-            PC2 = AddressMap.RESETS[Bits.extract(op.encoding, 3, 3)];
+            int address = AddressMap.RESETS[Bits.extract(op.encoding, 3, 3)];
+            return (cpu, nextPC) -> {
+                cpu.push16(nextPC);
+                return address;
+            };
         }
-            break;
         case RET: {
-            PC2 = pop16();
+            return (cpu, nextPC) -> cpu.pop16();
         }
-            break;
         case RET_CC: {
-            if (extractCondition(op)) {
-                condition = true;
-                PC2 = pop16();
-            }
+            int condition = extractCondition(op);
+            int additionalCycles = op.additionalCycles;
+            return (cpu, nextPC) -> {
+                if (cpu.testCondition(condition)) {
+                    cpu.nextNonIdleCycle += additionalCycles;
+                    return cpu.pop16();
+                }
+                return nextPC;
+            };
         }
-            break;
 
         // Interrupts
         case EDI: {
-            IME = Bits.test(op.encoding, 3);
+            boolean enable = Bits.test(op.encoding, 3);
+            return (cpu, nextPC) -> {
+                cpu.IME = enable;
+                return nextPC;
+            };
         }
-            break;
         case RETI: {
-            IME = true;
-            PC2 = pop16();
+            return (cpu, nextPC) -> {
+                cpu.IME = true;
+                return cpu.pop16();
+            };
         }
-            break;
 
         // Misc control
         case HALT: {
-            nextNonIdleCycle = Long.MAX_VALUE;
-            halt = true;
+            return (cpu, nextPC) -> {
+                cpu.nextNonIdleCycle = Long.MAX_VALUE;
+                return nextPC;
+            };
         }
-            break;
-        case STOP:
-            throw new Error("STOP is not implemented");
-        default: {
+        case STOP: {
+            return (cpu, nextPC) -> {
+                throw new Error("STOP is not implemented");
+            };
         }
-            break;
+        default: {
+            return (cpu, nextPC) -> nextPC;
         }
-        PC = PC2;
-        if (!halt) {
-            nextNonIdleCycle += op.cycles;
-            if (condition) {
-                nextNonIdleCycle += op.additionalCycles;
-            }
         }
     }
 
@@ -642,6 +1015,54 @@ public final class Cpu implements Component, Clocked {
         }
     }
 
+    /**
+     * return the addresses of the registers IE and IF and of the high Ram.
+     */
+    @Override
+    public int[] addressRanges() {
+        return new int[] { AddressMap.REG_IF, AddressMap.REG_IF + 1,
+                HIGH_RAM_START, AddressMap.REG_IE + 1 };
+    }
+
+    /**
+     * writes the registers of the processor, the cycle of its next
+     * instruction and the content of the high ram.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        writer.writeLong(nextNonIdleCycle);
+        writer.writeInt(PC);
+        writer.writeInt(SP);
+        writer.writeBoolean(IME);
+        writer.writeByte(IE);
+        writer.writeByte(IF);
+        for (Reg r : REGS)
+            writer.writeByte(r == Reg.F ? flags() : reg(r));
+        writer.writeRam(highRam);
+    }
+
+    /**
+     * restores the state of the processor. The cache of the instructions
+     * remains valid, as the rom is never modified, but is remapped to the
+     * banks selected in the restored cartridge, which must hence be restored
+     * first.
+     */
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        nextNonIdleCycle = reader.readLong();
+        PC = reader.readInt();
+        SP = reader.readInt();
+        IME = reader.readBoolean();
+        IE = reader.readByte();
+        IF = reader.readByte();
+        for (Reg r : REGS)
+            setReg(r, reader.readByte());
+        flagOp = FlagOp.NONE;
+        reader.readRam(highRam);
+        if (codeCache != null)
+            codeCache.remap();
+    }
+
     /**
      * @return an array containing in order the value of the registers: PC, SP,
      *         A, F, B, C, D, E, H and L
@@ -651,7 +1072,7 @@ public final class Cpu implements Component, Clocked {
         tab[0] = PC;
         tab[1] = SP;
         for (int i = 0; i < 8; i++) {
-            tab[i + 2] = bench8.get(Reg.values()[i]);
+            tab[i + 2] = i == Reg.F.index() ? flags() : regs[i];
         }
         return tab;
     }
@@ -689,14 +1110,13 @@ public final class Cpu implements Component, Clocked {
     }
 
     /**
-     * reads from the bus the 8 bits value at the address contained right next
-     * to the register PC, hence at PC+1.
+     * return the 8 bits operand of the instruction being executed, which was
+     * read right next to its opcode, hence at PC+1.
      * 
      * @return the 8 bits value at the address contained in PC+1
      */
     private int read8AfterOpcode() {
-        assert PC < 0xFFFF;
-        return read8(PC + 1);
+        return operand;
     }
     
     private int readExtend8(int a) {
@@ -718,20 +1138,20 @@ public final class Cpu implements Component, Clocked {
     }
 
     /**
-     * reads from the bus the 16 bits value at the address contained right next
-     * to the register PC, hence at PC+1.
+     * return the 16 bits operand of the instruction being executed, which was
+     * read right next to its opcode, hence at PC+1.
      * 
      * @return the 16 bits value at the address contained in PC+1
      */
     private int read16AfterOpcode() {
-        assert PC < 0xFFFE;
-        int lsb = read8(PC + 1);
-        int msb = read8(PC + 2);
-        return Bits.make16(msb, lsb);
+        return operand;
     }
 
     /**
-     * writes in the bus the given 8 bits value at the given address.
+     * writes in the bus the given 8 bits value at the given address. As such a
+     * writing may change the mapping of the rom, when it is done in the
+     * cartridge or disables the Boot Rom, the cache of decoded instructions is
+     * then remapped.
      * 
      * @param address
      *            the address
@@ -742,6 +1162,10 @@ public final class Cpu implements Component, Clocked {
      */
     private void write8(int address, int v) {
         bus.write(address, v);
+        if (codeCache != null && (address < AddressMap.VIDEO_RAM_START
+                || address == AddressMap.REG_BOOT_ROM_DISABLE)) {
+            codeCache.remap();
+        }
     }
 
     /**
@@ -786,12 +1210,27 @@ public final class Cpu implements Component, Clocked {
         return read16(address);
     }
 
+    // GESTION DES REGISTRES
+
+    private int reg(Reg r) {
+        return regs[r.index()];
+    }
+
+    /**
+     * stores the given value, which must be an 8 bits value, in the given
+     * register. It is not checked, as all the values stored come from the
+     * bus, the alu or are clipped to 8 bits.
+     */
+    private void setReg(Reg r, int v) {
+        regs[r.index()] = v;
+    }
+
     // GESTION DES PAIRES DE REGISTRES
 
     private int reg16(Reg16 r) {
-        int msb = bench8.get(Reg.values()[2 * r.index()]);
-        int lsb = bench8.get(Reg.values()[2 * r.index() + 1]);
-        return Bits.make16(msb, lsb);
+        int msb = regs[2 * r.index()];
+        int lsb = r == Reg16.AF ? flags() : regs[2 * r.index() + 1];
+        return (msb << Byte.SIZE) | lsb;
     }
 
     /**
@@ -813,13 +1252,12 @@ public final class Cpu implements Component, Clocked {
 
     private void setReg16(Reg16 r, int newV) {
         Preconditions.checkBits16(newV);
+        regs[2 * r.index()] = newV >>> Byte.SIZE;
         if (r == Reg16.AF) {
-            bench8.set(Reg.values()[2 * r.index()], Bits.extract(newV, 8, 8));
-            bench8.set(Reg.values()[2 * r.index() + 1],
-                    Bits.clip(8, newV & (-1 << 4)));
+            regs[2 * r.index() + 1] = newV & 0xF0;
+            flagOp = FlagOp.NONE;
         } else {
-            bench8.set(Reg.values()[2 * r.index()], Bits.extract(newV, 8, 8));
-            bench8.set(Reg.values()[2 * r.index() + 1], Bits.clip(8, newV));
+            regs[2 * r.index() + 1] = newV & 0xFF;
         }
     }
 
@@ -864,12 +1302,118 @@ public final class Cpu implements Component, Clocked {
 
     // GESTION DES FANIONS
 
+    /**
+     * records an operation whose flags are computed lazily, and return its
+     * result.
+     */
+    private int lazyFlags(FlagOp op, int l, int r, boolean carry,
+            int result) {
+        flagOp = op;
+        flagL = l;
+        flagR = r;
+        flagCarry = carry;
+        flagResult = result;
+        return result;
+    }
+
+    private int add8(int l, int r, boolean c0) {
+        return lazyFlags(FlagOp.ADD, l, r, c0,
+                Bits.clip(8, l + r + (c0 ? 1 : 0)));
+    }
+
+    private int sub8(int l, int r, boolean b0) {
+        return lazyFlags(FlagOp.SUB, l, r, b0,
+                Bits.clip(8, l - r - (b0 ? 1 : 0)));
+    }
+
+    private int inc8(int v) {
+        return lazyFlags(FlagOp.INC, v, 1, testFlag(Alu.Flag.C),
+                Bits.clip(8, v + 1));
+    }
+
+    private int dec8(int v) {
+        return lazyFlags(FlagOp.DEC, v, 1, testFlag(Alu.Flag.C),
+                Bits.clip(8, v - 1));
+    }
+
+    private int and8(int l, int r) {
+        return lazyFlags(FlagOp.AND, l, r, false, l & r);
+    }
+
+    private int or8(int l, int r) {
+        return lazyFlags(FlagOp.OR, l, r, false, l | r);
+    }
+
+    private int xor8(int l, int r) {
+        return lazyFlags(FlagOp.XOR, l, r, false, l ^ r);
+    }
+
+    /**
+     * return the value of the register F, computing first the flags of the
+     * last operation if they are lazy.
+     */
+    private int flags() {
+        if (flagOp != FlagOp.NONE) {
+            setReg(Reg.F, lazyFlagsValue());
+            flagOp = FlagOp.NONE;
+        }
+        return reg(Reg.F);
+    }
+
+    /**
+     * return the flags of the last operation, computed by the alu from its
+     * operands. The increments and decrements keep the flag C.
+     */
+    private int lazyFlagsValue() {
+        switch (flagOp) {
+        case ADD:
+            return Alu.unpackFlags(Alu.add(flagL, flagR, flagCarry));
+        case SUB:
+            return Alu.unpackFlags(Alu.sub(flagL, flagR, flagCarry));
+        case INC:
+            return keptCarry(Alu.unpackFlags(Alu.add(flagL, flagR)));
+        case DEC:
+            return keptCarry(Alu.unpackFlags(Alu.sub(flagL, flagR)));
+        case AND:
+            return Alu.unpackFlags(Alu.and(flagL, flagR));
+        case OR:
+            return Alu.unpackFlags(Alu.or(flagL, flagR));
+        case XOR:
+            return Alu.unpackFlags(Alu.xor(flagL, flagR));
+        default:
+            throw new Error();
+        }
+    }
+
+    private int keptCarry(int flags) {
+        int c = Alu.Flag.C.mask();
+        return (flags & ~c) | (flagCarry ? c : 0);
+    }
+
+    /**
+     * return the flag C of the last operation whose flags are lazy, without
+     * computing the other ones.
+     */
+    private boolean lazyCarry() {
+        switch (flagOp) {
+        case ADD:
+            return flagL + flagR + (flagCarry ? 1 : 0) > 0xFF;
+        case SUB:
+            return flagL - flagR - (flagCarry ? 1 : 0) < 0;
+        case INC: case DEC:
+            return flagCarry;
+        default:
+            return false;
+        }
+    }
+
     private void setRegFromAlu(Reg r, int vf) {
-        bench8.set(r, Alu.unpackValue(vf));
+        setReg(r, Alu.unpackValue(vf));
     }
 
     private void setFlags(int vf) {
-        bench8.set(Reg.F, Alu.unpackFlags(vf));
+        setReg(Reg.F, Alu.unpackFlags(vf));
+        flagOp = FlagOp.NONE;
     }
 
     private void setRegFlags(Reg r, int vf) {
@@ -887,8 +1431,11 @@ public final class Cpu implements Component, Clocked {
         int flags = Alu.unpackFlags(vf);
         int v1Vector = flagVector(FlagSrc.V1, z, n, h, c);
         int aluVector = flagVector(FlagSrc.ALU, z, n, h, c) & flags;
-        int cpuVector = flagVector(FlagSrc.CPU, z, n, h, c) & bench8.get(Reg.F);
-        bench8.set(Reg.F, v1Vector | aluVector | cpuVector);
+        int cpuVector = flagVector(FlagSrc.CPU, z, n, h, c);
+        if (cpuVector != 0)
+            cpuVector &= flags();
+        setReg(Reg.F, v1Vector | aluVector | cpuVector);
+        flagOp = FlagOp.NONE;
     }
 
     /**
@@ -915,49 +1462,82 @@ public final class Cpu implements Component, Clocked {
 
     // EXTRACTION DES PARAMETRES
 
-    private Reg extractReg(Opcode opcode, int startBit) {
+    private static Reg extractReg(Opcode opcode, int startBit) {
         return extractRegTab[Bits.extract(opcode.encoding, startBit, 3)];
     }
 
-    private Reg16 extractReg16(Opcode opcode) {
+    private static Reg16 extractReg16(Opcode opcode) {
         return extractReg16Tab[Bits.extract(opcode.encoding, 4, 2)];
     }
 
-    private int extractHlIncrement(Opcode opcode) {
+    private static int extractHlIncrement(Opcode opcode) {
         return Bits.test(opcode.encoding, 4) ? -1 : 1;
     }
 
-    private RotDir extractDirRot(Opcode opcode) {
+    private static RotDir extractDirRot(Opcode opcode) {
         return Bits.test(opcode.encoding, 3) ? RotDir.RIGHT : RotDir.LEFT;
     }
 
-    private int extractIndexBRS(Opcode opcode) {
+    private static int extractIndexBRS(Opcode opcode) {
         return Bits.extract(opcode.encoding, 3, 3);
     }
 
-    private int SetOrRes(Opcode opcode, int index, int regValue) {
+    /**
+     * return the function setting or resetting the bit designated by the given
+     * opcode, depending on the opcode.
+     */
+    private static IntUnaryOperator extractSetOrRes(Opcode opcode) {
+        int mask = Bits.mask(extractIndexBRS(opcode));
         if (Bits.test(opcode.encoding, 6)) {
-            return regValue | Bits.mask(index);
+            return v -> v | mask;
         } else {
-            return regValue & Bits.complement8(Bits.mask(index));
+            int complement = Bits.complement8(mask);
+            return v -> v & complement;
         }
     }
 
-    private boolean carryASH(Opcode opcode, boolean addOrSub) {
-        boolean c = Bits.test(opcode.encoding, 3)
-                && bench8.testBit(Reg.F, Alu.Flag.C);
-        return addOrSub ? c : !c;
+    private static boolean extractCarryUse(Opcode opcode) {
+        return Bits.test(opcode.encoding, 3);
+    }
+
+    private static int extractCondition(Opcode opcode) {
+        return Bits.extract(opcode.encoding, 3, 2);
+    }
+
+    private boolean carry(boolean withCarry) {
+        return withCarry && testFlag(Alu.Flag.C);
     }
 
+    /**
+     * return the value of the given flag. The flags Z and C of an operation
+     * whose flags are lazy are given without computing the others.
+     */
     private boolean testFlag(Alu.Flag f) {
-        return bench8.testBit(Reg.F, f);
+        if (flagOp != FlagOp.NONE) {
+            if (f == Alu.Flag.Z)
+                return flagResult == 0;
+            else if (f == Alu.Flag.C)
+                return lazyCarry();
+            flags();
+        }
+        return Bits.test(reg(Reg.F), f);
     }
 
-    private boolean extractCondition(Opcode opcode) {
-        boolean z = bench8.testBit(Reg.F, Alu.Flag.Z);
-        boolean c = bench8.testBit(Reg.F, Alu.Flag.C);
-        boolean[] conditions = { !z, z, !c, c };
-        return conditions[Bits.extract(opcode.encoding, 3, 2)];
+    /**
+     * return the value of the given condition, whose index is that of the
+     * conditions NZ, Z, NC and C in this order.
+     */
+    private boolean testCondition(int condition) {
+        switch (condition) {
+        case 0:
+            return !testFlag(Alu.Flag.Z);
+        case 1:
+            return testFlag(Alu.Flag.Z);
+        case 2:
+            return !testFlag(Alu.Flag.C);
+        default:
+            return testFlag(Alu.Flag.C);
+        }
     }
 
     private int interruptionNumber() {
@@ -0,0 +1,154 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.cpu;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+/**
+ * measures the number of instructions executed per second by the processor,
+ * on loops of instructions of different kinds. Run with the gc profiler, it
+ * also gives the bytes allocated per instruction.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class CpuBenchmark {
+
+    private static final int INSTRUCTIONS_PER_INVOCATION = 10_000;
+
+    /**
+     * represents a loop of instructions, executed from the address 0.
+     */
+    public enum Mix {
+        // loads, arithmetic and logic operations, prefixed instructions,
+        // stack operations, jumps and calls
+        MIXED(0x31, 0xFE, 0xFF, // LD SP, 0xFFFE
+                0x21, 0x00, 0xC0, // LD HL, 0xC000
+                0x06, 0x10,       // LD B, 0x10
+                0x3C,             // INC A
+                0x80,             // ADD A, B
+                0xA8,             // XOR A, B
+                0x77,             // LD [HL], A
+                0x23,             // INC HL
+                0xCB, 0x37,       // SWAP A
+                0xCB, 0x40,       // BIT 0, B
+                0xC5,             // PUSH BC
+                0xC1,             // POP BC
+                0xFE, 0x33,       // CP A, 0x33
+                0x05,             // DEC B
+                0x20, 0xF0,       // JR NZ, -16
+                0xCD, 0x1D, 0x00, // CALL 0x001D
+                0x18, 0xE6,       // JR -26
+                0xC9),            // RET
+
+        // register to register arithmetic and logic operations only
+        ARITHMETIC(0x06, 0x10,    // LD B, 0x10
+                0x3C,             // INC A
+                0x80,             // ADD A, B
+                0x90,             // SUB A, B
+                0xA8,             // XOR A, B
+                0xB1,             // OR A, C
+                0xA0,             // AND A, B
+                0x27,             // DAA
+                0xCB, 0x37,       // SWAP A
+                0x17,             // RLA
+                0x09,             // ADD HL, BC
+                0x05,             // DEC B
+                0x20, 0xF2,       // JR NZ, -14
+                0x18, 0xEE),      // JR -18
+
+        // loads and stores through every addressing mode
+        MEMORY(0x31, 0xFE, 0xFF,  // LD SP, 0xFFFE
+                0x21, 0x00, 0xC0, // LD HL, 0xC000
+                0x06, 0x10,       // LD B, 0x10
+                0x2A,             // LD A, [HL+]
+                0x22,             // LD [HL+], A
+                0x77,             // LD [HL], A
+                0x7E,             // LD A, [HL]
+                0xEA, 0x00, 0xD0, // LD [0xD000], A
+                0xFA, 0x00, 0xD0, // LD A, [0xD000]
+                0xE0, 0x80,       // LD [0xFF80], A
+                0xF0, 0x80,       // LD A, [0xFF80]
+                0xC5,             // PUSH BC
+                0xD1,             // POP DE
+                0x05,             // DEC B
+                0x20, 0xED,       // JR NZ, -19
+                0x18, 0xE6),      // JR -26
+
+        // accesses to the pairs of registers, through 16 bits arithmetic
+        // and stack operations
+        REGISTER_PAIRS(0x31, 0xFE, 0xFF, // LD SP, 0xFFFE
+                0x01, 0x34, 0x12, // LD BC, 0x1234
+                0x11, 0x78, 0x56, // LD DE, 0x5678
+                0x21, 0x00, 0xC0, // LD HL, 0xC000
+                0x03,             // INC BC
+                0x1B,             // DEC DE
+                0x19,             // ADD HL, DE
+                0x09,             // ADD HL, BC
+                0xF5,             // PUSH AF
+                0xC5,             // PUSH BC
+                0xD1,             // POP DE
+                0xF1,             // POP AF
+                0xE5,             // PUSH HL
+                0xC1,             // POP BC
+                0x18, 0xF4);      // JR -12
+
+        private final int[] program;
+
+        private Mix(int... program) {
+            this.program = program;
+        }
+    }
+
+    @Param({ "MIXED", "ARITHMETIC", "MEMORY", "REGISTER_PAIRS" })
+    public Mix mix;
+
+    private Cpu cpu;
+    private long cycle;
+
+    @Setup
+    public void setUp() {
+        Bus bus = new Bus();
+        Ram ram = new Ram(0xFF00);
+        for (int i = 0; i < mix.program.length; i++) {
+            ram.write(i, mix.program[i]);
+        }
+        new RamController(ram, 0).attachTo(bus);
+        cpu = new Cpu();
+        cpu.attachTo(bus);
+        cycle = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS_PER_INVOCATION)
+    public long executeInstructionMix() {
+        for (int i = 0; i < INSTRUCTIONS_PER_INVOCATION; i++) {
+            cpu.cycle(cycle);
+            cycle = cpu.nextEventCycle(cycle + 1);
+        }
+        return cycle;
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.gui;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.RewindBuffer;
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.Joypad.Key;
+import ch.epfl.gameboj.component.lcd.LcdController;
+
+/**
+ * represents the simulation of a Game Boy on a dedicated thread, image by
+ * image, in lockstep with the wall-clock time, possibly accelerated. When
+ * the simulation is faster than real time, only the images which can be
+ * displayed, about 60 per second of wall-clock time, are drawn.
+ *
+ * The other threads communicate with it without any lock: the key events are
+ * put in a queue, emptied before each image, and the images drawn are
+ * converted to ARGB colors and published through a triple buffer, so that
+ * the JavaFX application thread only has to copy them.
+ */
+public final class Emulator {
+
+    private static final int REWIND_SECONDS = 60;
+    private static final int IMAGES_PER_SNAPSHOT = 2;
+    private static final int SNAPSHOTS_PER_KEYFRAME = 30;
+
+    // the maximal delay after which the simulation gives up catching up
+    private static final long MAX_DELAY = 250_000_000L;
+    private static final long DISPLAY_PERIOD = 1_000_000_000L / 60;
+
+    private static final Key[] KEYS = Key.values();
+
+    private final GameBoy gb;
+    private final RewindBuffer history;
+    private final TripleBuffer frames = new TripleBuffer(
+            LcdController.LCD_WIDTH * LcdController.LCD_HEIGHT);
+    // the key events, each of them being twice the ordinal of the key, plus
+    // one if the key is pressed
+    private final Queue<Integer> keyEvents = new ConcurrentLinkedQueue<>();
+    private volatile boolean rewinding = false;
+    private volatile double speed = 1;
+    private final Thread thread;
+
+    // the keys pressed, owned by the simulation thread
+    private int pressedKeys = 0;
+
+    /**
+     * builds the simulation of the given Game Boy, not started yet, at the
+     * speed of the real Game Boy. The images are drawn in the frame buffer
+     * mode.
+     *
+     * @param gb
+     *            the Game Boy
+     * @throws NullPointerException
+     *             if the Game Boy is null
+     */
+    public Emulator(GameBoy gb) {
+        this.gb = Objects.requireNonNull(gb);
+        gb.lcdController().setRenderMode(LcdController.RenderMode.FRAME_BUFFER);
+        history = new RewindBuffer(
+                (int) (REWIND_SECONDS * GameBoy.CYCLES_PER_SECOND
+                        / (IMAGES_PER_SNAPSHOT * LcdController.CYCLES_PER_IMAGE)),
+                SNAPSHOTS_PER_KEYFRAME);
+        thread = new Thread(this::run, "Gameboj emulation");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * starts the simulation thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * stops the simulation thread and waits for its end.
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public void stop() throws InterruptedException {
+        thread.interrupt();
+        thread.join();
+    }
+
+    /**
+     * presses the given key of the joypad, before the next image.
+     *
+     * @param k
+     *            the key
+     */
+    public void keyPressed(Key k) {
+        keyEvents.add(2 * k.ordinal() + 1);
+    }
+
+    /**
+     * releases the given key of the joypad, before the next image.
+     *
+     * @param k
+     *            the key
+     */
+    public void keyReleased(Key k) {
+        keyEvents.add(2 * k.ordinal());
+    }
+
+    /**
+     * starts or stops rewinding the simulation. While it is rewound, each
+     * image goes back to the previous snapshot of its history.
+     *
+     * @param rewinding
+     *            true to rewind the simulation
+     */
+    public void setRewinding(boolean rewinding) {
+        this.rewinding = rewinding;
+    }
+
+    /**
+     * changes the speed of the simulation, relative to the real Game Boy.
+     *
+     * @param speed
+     *            the speed (must be strictly positive), or
+     *            Double.POSITIVE_INFINITY to simulate as fast as possible
+     * @throws IllegalArgumentException
+     *             if the speed is not strictly positive
+     */
+    public void setSpeed(double speed) {
+        Preconditions.checkArgument(speed > 0);
+        this.speed = speed;
+    }
+
+    /**
+     * return the colors of the pixels of the last image drawn, line by line
+     * and in the ARGB format, if it was drawn since the last call and differs
+     * from the image returned before, or null otherwise. The array returned
+     * belongs to the caller until the next call, which must be done from the
+     * same thread.
+     *
+     * @return the last image drawn, or null if there is none new or if it is
+     *         unchanged
+     */
+    public int[] newFrame() {
+        return frames.acquire();
+    }
+
+    private void run() {
+        LcdController lcdc = gb.lcdController();
+        // the wall-clock time at which the cycle originCycle was simulated
+        long origin = System.nanoTime();
+        long originCycle = gb.cycles();
+        double currentSpeed = 1;
+        int imagesBeforeSnapshot = 0;
+        long lastDisplay = 0;
+        long imagesDrawn = lcdc.imagesDrawn();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            for (Integer e = keyEvents.poll(); e != null; e = keyEvents.poll())
+                keyChange(KEYS[e >>> 1], Bits.test(e, 0));
+
+            boolean rewind = rewinding && !history.isEmpty();
+            if (speed != currentSpeed || rewind) {
+                currentSpeed = rewind ? 1 : speed;
+                origin = System.nanoTime();
+                originCycle = gb.cycles();
+            }
+            boolean draw = rewind || currentSpeed <= 1
+                    || System.nanoTime() - lastDisplay >= DISPLAY_PERIOD;
+            lcdc.setRenderMode(draw ? LcdController.RenderMode.FRAME_BUFFER
+                    : LcdController.RenderMode.NONE);
+
+            if (rewind) {
+                gb.restore(history.pop());
+                for (Key k : KEYS) {
+                    if (Bits.test(pressedKeys, k.ordinal()))
+                        gb.joypad().keyPressed(k);
+                    else
+                        gb.joypad().keyReleased(k);
+                }
+                originCycle = gb.cycles();
+                gb.runUntilImage(gb.cycles() + LcdController.CYCLES_PER_IMAGE);
+                imagesBeforeSnapshot = 0;
+            } else {
+                // the snapshots are taken at the end of an image, so that the
+                // image following their restoration is entirely drawn after it
+                boolean imageEnd = gb.runUntilImage(
+                        gb.cycles() + LcdController.CYCLES_PER_IMAGE);
+                if (imageEnd && --imagesBeforeSnapshot <= 0) {
+                    history.push(gb.snapshot());
+                    imagesBeforeSnapshot = IMAGES_PER_SNAPSHOT;
+                }
+            }
+
+            // an image identical to the one displayed is not published again
+            if (lcdc.imagesDrawn() != imagesDrawn) {
+                imagesDrawn = lcdc.imagesDrawn();
+                if (lcdc.imageChanged()) {
+                    ImageConverter.convert(lcdc.currentFrame(),
+                            frames.backBuffer());
+                    frames.publish();
+                }
+                lastDisplay = System.nanoTime();
+            }
+
+            long deadline = origin
+                    + (long) (nanos(gb.cycles() - originCycle) / currentSpeed);
+            long wait = deadline - System.nanoTime();
+            if (wait < -MAX_DELAY) {
+                origin = System.nanoTime();
+                originCycle = gb.cycles();
+            }
+            while (wait > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(wait);
+                wait = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    private void keyChange(Key k, boolean pressed) {
+        pressedKeys = Bits.set(pressedKeys, k.ordinal(), pressed);
+        if (pressed)
+            gb.joypad().keyPressed(k);
+        else
+            gb.joypad().keyReleased(k);
+    }
+
+    private static long nanos(long cycles) {
+        return (long) (cycles / GameBoy.CYCLES_PER_NANOSECOND);
+    }
+}
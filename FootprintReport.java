@@ -0,0 +1,71 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.function.Function;
+
+import ch.epfl.gameboj.GameBoy;
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * measures the number of bytes of heap used by each Game Boy when many of
+ * them simulate the same ROM in a single process, in the default
+ * configuration and in the one used by the batch runner.
+ */
+public final class FootprintReport {
+
+    private static final String USAGE = "usage: FootprintReport ROM [INSTANCES [FRAMES]]";
+
+    private FootprintReport() {
+    }
+
+    /**
+     * simulates the given number of Game Boys (by default 200) sharing the ROM
+     * given as first argument during the given number of images (by default
+     * 60), and prints the number of bytes used per Game Boy.
+     *
+     * @param args
+     *            the arguments
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Rom rom = new Rom(Files.readAllBytes(new File(args[0]).toPath()));
+        int instances = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+
+        measure("default", rom, instances, frames, GameBoy::new);
+        measure("batch", rom, instances, frames, BatchRunner::newGameBoy);
+    }
+
+    private static void measure(String name, Rom rom, int instances,
+            int frames, Function<Cartridge, GameBoy> factory) {
+        long before = usedMemory();
+        GameBoy[] gameBoys = new GameBoy[instances];
+        for (int i = 0; i < instances; i++) {
+            gameBoys[i] = factory.apply(Cartridge.ofRom(rom));
+            gameBoys[i].runUntil((long) frames * LcdController.CYCLES_PER_IMAGE);
+        }
+        long after = usedMemory();
+
+        System.out.printf("%s: %d instances, %d bytes per instance%n", name,
+                gameBoys.length, (after - before) / gameBoys.length);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
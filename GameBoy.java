@@ -40,6 +40,11 @@ public final class GameBoy {
     private final Joypad joypad;
     private long SimulatedCycles = 0;
 
+    private final Snapshot.Writer snapshotWriter = new Snapshot.Writer();
+    private final Snapshot.Reader snapshotReader = new Snapshot.Reader();
+    // the layout of the snapshots of this gameboy, checked before restoring
+    private final int[] snapshotLayout;
+
     /**
      * builds a Game Boy creating the necessary components and attaching them to
      * a common bus.
@@ -68,14 +73,16 @@ public final class GameBoy {
         bcr = new BootRomController(cartridge);
         bcr.attachTo(bus);
 
-        timer = new Timer(cpu);
+        timer = new Timer(cpu, this::cycles);
         timer.attachTo(bus);
         
-        lcdc = new LcdController(cpu);
+        lcdc = new LcdController(cpu, this::cycles);
         lcdc.attachTo(bus);
         
         joypad = new Joypad(cpu);
         joypad.attachTo(bus);
+
+        snapshotLayout = snapshot().layout();
     }
 
     /**
@@ -113,21 +120,121 @@ public final class GameBoy {
         return joypad;
     }
 
+    /**
+     * enables the cache of the instructions decoded by the processor in the
+     * rom of the cartridge, which avoids reading and decoding them again each
+     * time they are executed. The simulation is not otherwise affected.
+     */
+    public void enableCodeCache() {
+        cpu.enableCodeCache(bcr::romOffset);
+    }
+
+    /**
+     * return a snapshot of the whole state of the gameboy, from which its
+     * simulation can later be resumed. The memories are not copied: their
+     * pages are shared with the snapshot until they are written.
+     * 
+     * @return a snapshot of the state of the gameboy
+     */
+    public Snapshot snapshot() {
+        snapshotWriter.writeLong(SimulatedCycles);
+        bcr.saveState(snapshotWriter);
+        cpu.saveState(snapshotWriter);
+        timer.saveState(snapshotWriter);
+        lcdc.saveState(snapshotWriter);
+        joypad.saveState(snapshotWriter);
+        snapshotWriter.writeRam(workRam);
+        return snapshotWriter.build();
+    }
+
+    /**
+     * replaces the state of the gameboy by the one of the given snapshot,
+     * without allocating any memory. The snapshot can be restored as many
+     * times as needed, in this gameboy or in any other using the same kind of
+     * cartridge, and the simulation then continues exactly as it did after
+     * the snapshot was taken. The instructions cache and the render mode of
+     * this gameboy are kept.
+     * 
+     * @param snapshot
+     *            the snapshot
+     * @throws NullPointerException
+     *             if the snapshot is null
+     * @throws IllegalArgumentException
+     *             if the snapshot was taken from a gameboy whose cartridge
+     *             has another type or another ram size, in which case the
+     *             state of this gameboy is left unchanged
+     */
+    public void restore(Snapshot snapshot) {
+        Preconditions.checkArgument(snapshot.hasLayout(snapshotLayout));
+        snapshotReader.reset(snapshot);
+        SimulatedCycles = snapshotReader.readLong();
+        bcr.restoreState(snapshotReader);
+        cpu.restoreState(snapshotReader);
+        timer.restoreState(snapshotReader);
+        lcdc.restoreState(snapshotReader);
+        joypad.restoreState(snapshotReader);
+        snapshotReader.readRam(workRam);
+    }
+
     /**
      * runs the simulated gameboy until the given cycle minus 1, calling the
      * method cycle of the timer, then of the lcd controller and then of the
-     * processor.
+     * processor. The cycles during which none of them has something to do are
+     * skipped, the simulation jumping directly to the next event of one of
+     * them. The timer and the lcd controller are only cycled at their
+     * events, as their registers are brought up to date when the processor
+     * accesses them.
      * 
      * @param cycle
      *            the cycle
      */
     public void runUntil(long cycle) {
         Preconditions.checkArgument(cycle >= cycles());
+        while (cycles() < cycle)
+            step(cycle);
+    }
+
+    /**
+     * runs the simulated gameboy like runUntil, but stops as soon as the lcd
+     * controller finishes an image, drawn or not. A snapshot taken then can
+     * be restored without mixing the lines of two images, as the next one is
+     * entirely drawn after it.
+     * 
+     * @param cycle
+     *            the cycle
+     * @return true if the simulation stopped because an image was finished
+     */
+    public boolean runUntilImage(long cycle) {
+        Preconditions.checkArgument(cycle >= cycles());
+        long images = lcdc.imagesDrawn() + lcdc.imagesSkipped();
         while (cycles() < cycle) {
-            timer.cycle(SimulatedCycles);
-            lcdc.cycle(SimulatedCycles); 
-            cpu.cycle(SimulatedCycles++);
+            step(cycle);
+            if (lcdc.imagesDrawn() + lcdc.imagesSkipped() != images)
+                return true;
         }
+        return false;
+    }
+
+    /**
+     * simulates the current cycle and jumps to the next one, before the given
+     * cycle, during which a component has something to do.
+     */
+    private void step(long cycle) {
+        if (timer.nextEventCycle(SimulatedCycles) == SimulatedCycles)
+            timer.cycle(SimulatedCycles);
+        if (lcdc.nextEventCycle(SimulatedCycles) == SimulatedCycles)
+            lcdc.cycle(SimulatedCycles);
+        cpu.cycle(SimulatedCycles);
+        SimulatedCycles = Math.min(cycle, nextEventCycle(SimulatedCycles + 1));
+    }
+
+    /**
+     * return the first cycle, greater than or equal to the given one, during
+     * which the timer, the lcd controller or the processor has something to do.
+     */
+    private long nextEventCycle(long cycle) {
+        return Math.min(timer.nextEventCycle(cycle),
+                Math.min(lcdc.nextEventCycle(cycle), cpu.nextEventCycle(cycle)));
     }
 
     /**
@@ -0,0 +1,86 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+/**
+ * measures the number of images simulated per second by a whole Game Boy, on
+ * the test programs bundled in the archive of the project. Each invocation
+ * simulates the same images from power on, boot ROM included, so that the
+ * work measured does not depend on the duration of the measurement. The
+ * simulation is measured with and without the cache of the instructions
+ * decoded in the rom, which only helps the programs running from the rom.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class GameBoyBenchmark {
+
+    private static final int IMAGES_PER_INVOCATION = 60;
+
+    @Param("Gameboj_Final.zip")
+    public String archive;
+
+    @Param({ "06-ld r,r.gb", "09-op r,r.gb", "instr_timing.gb", "tetris.gb",
+            "flappyboy.gb" })
+    public String rom;
+
+    @Param({ "LCD_IMAGE", "FRAME_BUFFER" })
+    public LcdController.RenderMode mode;
+
+    @Param({ "false", "true" })
+    public boolean codeCache;
+
+    private Rom data;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (ZipFile zip = new ZipFile(archive)) {
+            ZipEntry entry = zip.getEntry("Gameboj/" + rom);
+            if (entry == null)
+                throw new IOException(rom + " not found in " + archive);
+            try (InputStream s = zip.getInputStream(entry)) {
+                data = new Rom(s.readAllBytes());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMAGES_PER_INVOCATION)
+    public long runImages() {
+        GameBoy gb = new GameBoy(Cartridge.ofRom(data));
+        if (codeCache)
+            gb.enableCodeCache();
+        gb.lcdController().setRenderMode(mode);
+        gb.runUntil(IMAGES_PER_INVOCATION * LcdController.CYCLES_PER_IMAGE);
+        return gb.cycles();
+    }
+}
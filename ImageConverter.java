@@ -5,8 +5,15 @@
 
 package ch.epfl.gameboj.gui;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.component.lcd.LcdImage;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.image.PixelWriter;
 
@@ -34,4 +41,70 @@ public final class ImageConverter {
         
         return wi;
     }
+
+    /**
+     * return a pixel buffer of the given size, backed by a direct buffer, in
+     * which frames can be converted without any allocation. The buffer is
+     * displayed by the image built with new WritableImage(buffer).
+     * 
+     * @param width
+     *            the width of the buffer (must be strictly positive)
+     * @param height
+     *            the height of the buffer (must be strictly positive)
+     * @throws IllegalArgumentException
+     *             if the width or the height is not strictly positive
+     * @return a pixel buffer of the given size
+     */
+    public static PixelBuffer<IntBuffer> newPixelBuffer(int width,
+            int height) {
+        Preconditions.checkArgument(width > 0 && height > 0);
+        IntBuffer pixels = ByteBuffer.allocateDirect(width * height * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        return new PixelBuffer<>(width, height, pixels,
+                PixelFormat.getIntArgbPreInstance());
+    }
+
+    /**
+     * converts the given frame, whose pixels are colors between 0 and 3 given
+     * line by line, into the given array of colors in the ARGB format. Unlike
+     * the display of the colors, the conversion can be done on any thread.
+     * 
+     * @param frame
+     *            the colors of the pixels of the frame
+     * @param argb
+     *            the array receiving the colors, which must contain as many
+     *            pixels as the frame
+     * @throws IllegalArgumentException
+     *             if the frame and the array do not have the same size
+     */
+    public static void convert(byte[] frame, int[] argb) {
+        Preconditions.checkArgument(frame.length == argb.length);
+        for (int i = 0; i < frame.length; ++i)
+            argb[i] = COLOR_MAP[frame[i]];
+    }
+
+    /**
+     * copies the given colors, in the ARGB format and given line by line,
+     * into the given pixel buffer, and notifies the images displaying it that
+     * it changed. Must be called on the JavaFX application thread.
+     * 
+     * @param argb
+     *            the colors of the pixels
+     * @param buffer
+     *            the pixel buffer, which must contain as many pixels as the
+     *            array
+     * @throws IllegalArgumentException
+     *             if the array and the buffer do not have the same size
+     */
+    public static void display(int[] argb, PixelBuffer<IntBuffer> buffer) {
+        Preconditions.checkArgument(
+                argb.length == buffer.getWidth() * buffer.getHeight());
+        buffer.updateBuffer(b -> {
+            IntBuffer pixels = b.getBuffer();
+            pixels.clear();
+            pixels.put(argb);
+            pixels.rewind();
+            return null;
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.Joypad.Key;
+
+/**
+ * represents a script of key presses and releases, each of them happening at
+ * the beginning of a given image. An input script is immutable, and can hence
+ * be shared between several simulations.
+ *
+ * In its textual form, each line of a script contains the index of an image,
+ * the word press or release and the name of a key, separated by spaces, for
+ * example "30 press START". Empty lines and lines starting with # are ignored.
+ */
+public final class InputScript {
+
+    /**
+     * the script containing no key press nor release
+     */
+    public static final InputScript EMPTY = new InputScript(
+            Collections.emptyMap());
+
+    private final Map<Long, List<Event>> events;
+
+    private static final class Event {
+        private final Key key;
+        private final boolean pressed;
+
+        private Event(Key key, boolean pressed) {
+            this.key = key;
+            this.pressed = pressed;
+        }
+    }
+
+    private InputScript(Map<Long, List<Event>> events) {
+        this.events = events;
+    }
+
+    /**
+     * return the script described by the given lines.
+     *
+     * @param lines
+     *            the lines of the script
+     * @throws NullPointerException
+     *             if the lines are null
+     * @throws IllegalArgumentException
+     *             if one of the lines is invalid
+     * @return the script described by the given lines
+     */
+    public static InputScript parse(List<String> lines) {
+        Map<Long, List<Event>> events = new HashMap<>();
+        for (String line : Objects.requireNonNull(lines)) {
+            String l = line.trim();
+            if (l.isEmpty() || l.startsWith("#"))
+                continue;
+
+            String[] words = l.split("\\s+");
+            Preconditions.checkArgument(words.length == 3);
+            long image;
+            try {
+                image = Long.parseLong(words[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(e);
+            }
+            Preconditions.checkArgument(image >= 0);
+            Preconditions.checkArgument(
+                    words[1].equals("press") || words[1].equals("release"));
+            Key key = Key.valueOf(words[2]);
+
+            events.computeIfAbsent(image, i -> new ArrayList<>())
+                    .add(new Event(key, words[1].equals("press")));
+        }
+        return new InputScript(events);
+    }
+
+    /**
+     * return the script contained in the given file.
+     *
+     * @param file
+     *            the file
+     * @throws IOException
+     *             in case of input-output error
+     * @throws IllegalArgumentException
+     *             if one of the lines of the file is invalid
+     * @return the script contained in the given file
+     */
+    public static InputScript ofFile(File file) throws IOException {
+        return parse(Files.readAllLines(file.toPath()));
+    }
+
+    /**
+     * presses and releases on the given joypad the keys of the script which
+     * must be at the beginning of the image of given index.
+     *
+     * @param joypad
+     *            the joypad
+     * @param image
+     *            the index of the image
+     */
+    public void applyTo(Joypad joypad, long image) {
+        for (Event e : events.getOrDefault(image, Collections.emptyList())) {
+            if (e.pressed)
+                joypad.keyPressed(e.key);
+            else
+                joypad.keyReleased(e.key);
+        }
+    }
+}
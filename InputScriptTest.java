@@ -0,0 +1,50 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.headless;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.Joypad;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+class InputScriptTest {
+
+    private static int pressedButtons(Joypad joypad) {
+        joypad.write(AddressMap.REG_P1, 0b1101_1111);
+        return 0b1111 & ~joypad.read(AddressMap.REG_P1);
+    }
+
+    @Test
+    void applyToPressesAndReleasesKeysAtGivenImages() {
+        InputScript script = InputScript.parse(List.of("# start the game",
+                "", "3 press START", "3 press A", " 5   release START "));
+        Joypad joypad = new Joypad(new Cpu());
+
+        script.applyTo(joypad, 2);
+        assertEquals(0, pressedButtons(joypad));
+        script.applyTo(joypad, 3);
+        assertEquals(0b1001, pressedButtons(joypad));
+        script.applyTo(joypad, 4);
+        assertEquals(0b1001, pressedButtons(joypad));
+        script.applyTo(joypad, 5);
+        assertEquals(0b0001, pressedButtons(joypad));
+    }
+
+    @Test
+    void parseFailsForInvalidLines() {
+        for (String line : new String[] { "3 press", "x press A",
+                "-1 press A", "3 hold A", "3 press X", "3 press A B" }) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> InputScript.parse(List.of(line)));
+        }
+    }
+}
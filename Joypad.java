@@ -6,6 +6,7 @@
 package ch.epfl.gameboj.component;
 
 import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
@@ -13,7 +14,7 @@ import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 /**
  * represents the Game Boy's joypad.
  */
-public final class Joypad implements Component {
+public final class Joypad implements Component, Stateful {
 
     private final Cpu cpu;
 
@@ -68,6 +69,14 @@ public final class Joypad implements Component {
         }
     }
 
+    /**
+     * return the address of the register P1.
+     */
+    @Override
+    public int[] addressRanges() {
+        return new int[] { AddressMap.REG_P1, AddressMap.REG_P1 + 1 };
+    }
+
     /**
      * simulates the pressure on the given key.
      * 
@@ -91,6 +100,23 @@ public final class Joypad implements Component {
         keyChange(k, false);
     }
 
+    /**
+     * writes the selected lines and the keys currently pressed.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        writer.writeByte(line0);
+        writer.writeByte(line1);
+        writer.writeByte(lineSelection);
+    }
+
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        line0 = reader.readByte();
+        line1 = reader.readByte();
+        lineSelection = reader.readByte();
+    }
+
     private void keyChange(Key k, boolean pressed) {
         if (k.ordinal() < 4)
             line0 = Bits.set(line0, k.ordinal(), pressed);
@@ -7,16 +7,19 @@ package ch.epfl.gameboj.component.lcd;
 
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.LongSupplier;
 
 import ch.epfl.gameboj.Bus;
 import ch.epfl.gameboj.Preconditions;
 import ch.epfl.gameboj.Register;
 import ch.epfl.gameboj.RegisterFile;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.bits.Bit;
-import ch.epfl.gameboj.bits.BitVector;
 import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.bits.MutableBitVector;
 import ch.epfl.gameboj.component.Clocked;
 import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
 import ch.epfl.gameboj.component.cpu.Cpu;
 import ch.epfl.gameboj.component.cpu.Cpu.Interrupt;
 import ch.epfl.gameboj.component.memory.Ram;
@@ -31,15 +34,44 @@ import static ch.epfl.gameboj.AddressMap.REGS_LCDC_END;
 /**
  * represents a Liquid Crystal Display controller.
  */
-public final class LcdController implements Component, Clocked {
+public final class LcdController implements Component, Clocked, Stateful {
 
     private final Cpu cpu;
-    private final Ram OAM;
+    private final Ram OAM = new Ram(AddressMap.OAM_RAM_SIZE);
     private Bus bus;
 
     private LcdImage.Builder nextImageBuilder;
     private LcdImage currentImage;
 
+    /**
+     * represents the ways the lcd controller can draw the images: by building
+     * an LcdImage line by line, by writing the color of each pixel directly
+     * in a frame buffer which is reused from one image to the next, or not at
+     * all, the registers evolving as usual but the image currently displayed
+     * remaining the last one drawn.
+     */
+    public enum RenderMode {
+        LCD_IMAGE, FRAME_BUFFER, NONE
+    };
+
+    private RenderMode renderMode = RenderMode.LCD_IMAGE;
+    private RenderMode nextRenderMode = RenderMode.LCD_IMAGE;
+    private long imagesDrawn = 0;
+    private long imagesSkipped = 0;
+    private long imagesUnchanged = 0;
+
+    /**
+     * the render mode of the image currently displayed, or null if none was
+     * drawn, and, for this image and for the one being drawn, whether each of
+     * their lines differs from the same line of the image displayed before.
+     * The lines of images drawn in different modes are not compared, and are
+     * all considered as changed.
+     */
+    private RenderMode displayedMode = null;
+    private boolean[] changedLines = new boolean[LCD_HEIGHT];
+    private boolean[] nextChangedLines = new boolean[LCD_HEIGHT];
+    private boolean imageChanged = false;
+
     /**
      * the screen width in pixels
      */
@@ -51,6 +83,12 @@ public final class LcdController implements Component, Clocked {
 
     private static final int LY_MAX = 153;
 
+    /**
+     * the number of cycles needed to draw an image, each of the 154 lines
+     * taking 114 cycles
+     */
+    public static final int CYCLES_PER_IMAGE = 114 * (LY_MAX + 1);
+
     private static final int BG_LINE_SIZE = 256;
     private static final int WIN_LINE_SIZE = LCD_WIDTH;
 
@@ -59,20 +97,44 @@ public final class LcdController implements Component, Clocked {
     private static final int BYTES_PER_TILE = 16;
     private static final int ATTRIBUTE_BYTES_PER_SPRITE = 4;
     private static final int TILES_PER_LINE = 32;
+    private static final int MAX_SPRITES_PER_LINE = 10;
+    private static final int TRANSPARENT = -1;
 
-    private long nextNonIdleCycle;
+    private long nextNonIdleCycle = Long.MAX_VALUE;
+
+    /**
+     * the clock giving the cycle being simulated, the last cycle at which the
+     * controller was cycled, and the cycle of the next mode change having an
+     * effect other than changing LY and STAT, or Long.MAX_VALUE. The mode
+     * changes without such an effect are only performed when the registers
+     * are accessed or at the next one having an effect.
+     */
+    private final LongSupplier clock;
+    private long lastCycle = -1;
+    private long nextEffectCycle = Long.MAX_VALUE;
 
     private int winY;
 
-    private int copyDestination;
-    private int copySource;
+    private static final int NO_COPY = -1;
+
+    /**
+     * the address of the source of the copy to the object attributes memory
+     * requested since the last cycle, or NO_COPY, and the cycle at which the
+     * last byte of the copy in progress is written, or NO_COPY. The whole
+     * source is read and copied at the first cycle, but the object attributes
+     * memory remains inaccessible until the last one.
+     */
+    private int copySource = NO_COPY;
+    private long copyEndCycle = NO_COPY;
+    private final byte[] copyBuffer = new byte[AddressMap.OAM_RAM_SIZE];
 
     private enum Reg implements Register {
         LCDC, STAT, SCY, SCX, LY, LYC, DMA, BGP, OBP0, OBP1, WY, WX
     };
 
-    private final RegisterFile<Reg> lcdBank = new RegisterFile<>(
-            Reg.values());
+    private static final Reg[] REGS = Reg.values();
+
+    private final RegisterFile<Reg> lcdBank = new RegisterFile<>(REGS);
 
     private static enum LcdcBits implements Bit {
         BG, OBJ, OBJ_SIZE, BG_AREA, TILE_SOURCE, WIN, WIN_AREA, LCD_STATUS
@@ -90,7 +152,46 @@ public final class LcdController implements Component, Clocked {
         UNUSED_0, UNUSED_1, UNUSED_2, UNUSED_3, PALETTE, FLIP_H, FLIP_V, BEHIND_BG
     };
 
-    private static Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+    private final Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+    private final TileCache tileCache = new TileCache(videoRam);
+
+    /**
+     * the frame buffers, only allocated once the frame buffer mode is used
+     */
+    private byte[] frontBuffer = null;
+    private byte[] backBuffer = null;
+    private final int[] lineColors = new int[LCD_WIDTH];
+    private final int[] bgSpritesLine = new int[LCD_WIDTH];
+    private final int[] fgSpritesLine = new int[LCD_WIDTH];
+    private final int[] lineSprites = new int[MAX_SPRITES_PER_LINE];
+
+    /**
+     * the sprites intersecting each line, as given by spritesIntersectingLine,
+     * computed for all the lines at once for sprites of the given size, or 0
+     * if the ordinate or the abscissa of a sprite changed since
+     */
+    private final int[] spriteBuckets = new int[LCD_HEIGHT
+            * MAX_SPRITES_PER_LINE];
+    private final int[] spriteBucketSizes = new int[LCD_HEIGHT];
+    private int spriteBucketsSpriteSize = 0;
+
+    /**
+     * the lines in which the lines of the images are computed in the image
+     * mode, reused from one line to the next
+     */
+    private final MutableLcdImageLine bgLine = new MutableLcdImageLine(
+            BG_LINE_SIZE);
+    private final MutableLcdImageLine imageLine = new MutableLcdImageLine(
+            LCD_WIDTH);
+    private final MutableLcdImageLine winLine = new MutableLcdImageLine(
+            WIN_LINE_SIZE);
+    private final MutableLcdImageLine spritesBgLine = new MutableLcdImageLine(
+            LCD_WIDTH);
+    private final MutableLcdImageLine spritesFgLine = new MutableLcdImageLine(
+            LCD_WIDTH);
+    private final MutableLcdImageLine spriteLine = new MutableLcdImageLine(
+            LCD_WIDTH);
+    private final MutableBitVector bgOpacity = new MutableBitVector(LCD_WIDTH);
 
     /**
      * Constructs the LCD controller (that is initially disabled) with an
@@ -102,9 +203,26 @@ public final class LcdController implements Component, Clocked {
      */
     public LcdController(Cpu cpu) {
         this.cpu = cpu;
-        OAM = new Ram(AddressMap.OAM_RAM_SIZE);
-        nextNonIdleCycle = Long.MAX_VALUE;
-        copyDestination = AddressMap.OAM_END;
+        this.clock = () -> lastCycle;
+    }
+
+    /**
+     * Constructs the LCD controller (that is initially disabled) with an
+     * assigned cpu, whose registers are brought up to date, when they are read
+     * or written, to the current cycle given by the clock. The controller
+     * then only needs to be cycled at its events.
+     * 
+     * @param cpu
+     *            the Game Boy processor from which the LCD controller can
+     *            request interruptions
+     * @param clock
+     *            the clock giving the cycle being simulated
+     * @throws NullPointerException
+     *             if the clock is null
+     */
+    public LcdController(Cpu cpu, LongSupplier clock) {
+        this.cpu = cpu;
+        this.clock = Objects.requireNonNull(clock);
     }
 
     /**
@@ -114,9 +232,122 @@ public final class LcdController implements Component, Clocked {
      * @return the image currently displayed on the screen or an empty image
      */
     public LcdImage currentImage() {
-        return currentImage == null
-                ? new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT).build()
-                : currentImage;
+        if (currentImage == null) {
+            currentImage = frontBuffer == null
+                    ? new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT).build()
+                    : imageOf(frontBuffer);
+        }
+        return currentImage;
+    }
+
+    /**
+     * returns the colors of the pixels of the last image drawn in the frame
+     * buffer mode, line by line, in the form of bytes included between 0
+     * and 3. The returned array is owned by the lcd controller: it must not be
+     * modified, and it is reused to draw the image after the next one.
+     * 
+     * @return the colors of the pixels of the last image drawn in the frame
+     *         buffer mode
+     */
+    public byte[] currentFrame() {
+        if (frontBuffer == null)
+            frontBuffer = new byte[LCD_WIDTH * LCD_HEIGHT];
+        return frontBuffer;
+    }
+
+    /**
+     * returns the number of tile rows which were taken from the cache of
+     * decoded tiles instead of being decoded again from the video ram.
+     * 
+     * @return the number of hits of the tile cache
+     */
+    public long tileCacheHits() {
+        return tileCache.hits();
+    }
+
+    /**
+     * returns the number of tile rows which had to be decoded from the video
+     * ram, because they had never been decoded or had been modified since.
+     * 
+     * @return the number of misses of the tile cache
+     */
+    public long tileCacheMisses() {
+        return tileCache.misses();
+    }
+
+    /**
+     * returns the number of images drawn since the creation of the lcd
+     * controller, which changes each time the image currently displayed
+     * changes.
+     * 
+     * @return the number of images drawn
+     */
+    public long imagesDrawn() {
+        return imagesDrawn;
+    }
+
+    /**
+     * returns the number of images which were not drawn, because the render
+     * mode was NONE.
+     * 
+     * @return the number of images skipped
+     */
+    public long imagesSkipped() {
+        return imagesSkipped;
+    }
+
+    /**
+     * returns the number of images drawn which were identical to the image
+     * displayed before them, the fraction of the images which did not need to
+     * be displayed again being this number divided by the number of images
+     * drawn.
+     *
+     * @return the number of images drawn unchanged
+     */
+    public long imagesUnchanged() {
+        return imagesUnchanged;
+    }
+
+    /**
+     * returns true if the image currently displayed differs from the one
+     * displayed before it, or false if it is identical or if no image was
+     * drawn yet. An unchanged image does not need to be converted or displayed
+     * again.
+     *
+     * @return true if the image currently displayed changed
+     */
+    public boolean imageChanged() {
+        return imageChanged;
+    }
+
+    /**
+     * returns true if the line of given index of the image currently displayed
+     * differs from the same line of the image displayed before it, or false
+     * if it is identical or if no image was drawn yet.
+     *
+     * @param y
+     *            the index of the line
+     * @throws IndexOutOfBoundsException
+     *             if the index is not included between 0 (included) and the
+     *             screen height (excluded)
+     * @return true if the line of given index of the image currently displayed
+     *         changed
+     */
+    public boolean lineChanged(int y) {
+        return changedLines[Objects.checkIndex(y, LCD_HEIGHT)];
+    }
+
+    /**
+     * chooses the way the next images are drawn. The change takes effect at
+     * the beginning of the next image.
+     * 
+     * @param mode
+     *            the render mode
+     * @throws NullPointerException
+     *             if the mode is null
+     */
+    public void setRenderMode(RenderMode mode) {
+        nextRenderMode = Objects.requireNonNull(mode);
     }
 
     /**
@@ -134,7 +365,8 @@ public final class LcdController implements Component, Clocked {
 
     /**
      * gives access to the video ram, the lcd controller registers and the
-     * object attributes memory.
+     * object attributes memory, whose bytes are all 0xFF while a copy is in
+     * progress.
      * 
      * @param address
      *            the address (must be a 16 bits value)
@@ -148,10 +380,12 @@ public final class LcdController implements Component, Clocked {
         if (address >= VIDEO_RAM_START && address < VIDEO_RAM_END) {
             return videoRam.read(address - VIDEO_RAM_START);
         } else if (address >= REGS_LCDC_START && address < REGS_LCDC_END) {
-            Reg r = Reg.values()[address - REGS_LCDC_START];
+            sync(clock.getAsLong());
+            Reg r = REGS[address - REGS_LCDC_START];
             return lcdBank.get(r);
         } else if (address >= OAM_START && address < OAM_END) {
-            return OAM.read(address - OAM_START);
+            return copyEndCycle == NO_COPY ? OAM.read(address - OAM_START)
+                    : 0xFF;
         } else {
             return NO_DATA;
         }
@@ -159,7 +393,8 @@ public final class LcdController implements Component, Clocked {
 
     /**
      * gives access to the video ram, the lcd controller registers and the
-     * object attributes memory.
+     * object attributes memory, which is only readable and writable while no
+     * copy is in progress.
      * Initiates the copy process if any 8 bits value
      * is written in the DMA register.
      * 
@@ -174,17 +409,21 @@ public final class LcdController implements Component, Clocked {
     public void write(int address, int data) {
         Preconditions.checkBits16(address);
         Preconditions.checkBits8(data);
+        if (address >= REGS_LCDC_START && address < REGS_LCDC_END)
+            sync(clock.getAsLong());
         boolean prevLcdStatus = (lcdBank.testBit(Reg.LCDC,
                 LcdcBits.LCD_STATUS));
 
         if (address >= VIDEO_RAM_START && address < VIDEO_RAM_END) {
             videoRam.write(address - VIDEO_RAM_START, data);
+            tileCache.invalidate(address - VIDEO_RAM_START);
 
         } else if (address >= OAM_START && address < OAM_END) {
-            OAM.write(address - OAM_START, data);
+            if (copyEndCycle == NO_COPY)
+                writeOam(address - OAM_START, data);
 
         } else if (address >= REGS_LCDC_START && address < REGS_LCDC_END) {
-            Reg r = Reg.values()[address - REGS_LCDC_START];
+            Reg r = REGS[address - REGS_LCDC_START];
 
             if (!((r == Reg.LY) | (r == Reg.STAT))) {
 
@@ -199,7 +438,6 @@ public final class LcdController implements Component, Clocked {
                 } else if (r == Reg.LYC) {
                     LycEqLy();
                 } else if (r == Reg.DMA) {
-                    copyDestination = OAM_START;
                     copySource = lcdBank.get(Reg.DMA) << Byte.SIZE;
                 }
             } else if (r == Reg.STAT) {
@@ -207,25 +445,89 @@ public final class LcdController implements Component, Clocked {
                 lcdBank.set(Reg.STAT,
                         mask | Bits.clip(3, (lcdBank.get(Reg.STAT))));
             }
+            updateNextEffectCycle();
         }
     }
 
     /**
-     * Manages the writings in the object attributes memory when a copy is in
-     * progress.
+     * return the addresses of the video ram, of the object attributes memory
+     * and of the lcd controller registers.
+     */
+    @Override
+    public int[] addressRanges() {
+        return new int[] { VIDEO_RAM_START, VIDEO_RAM_END, OAM_START, OAM_END,
+                REGS_LCDC_START, REGS_LCDC_END };
+    }
+
+    /**
+     * writes the registers of the lcd controller, the progress of the current
+     * image and of the copy to the object attributes memory, and the content
+     * of the video ram and of the object attributes memory. The pixels
+     * already drawn are not part of the state.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        writer.writeLong(nextNonIdleCycle);
+        for (Reg r : REGS)
+            writer.writeByte(lcdBank.get(r));
+        writer.writeByte(winY);
+        writer.writeInt(copySource);
+        writer.writeLong(copyEndCycle);
+        writer.writeRam(videoRam);
+        writer.writeRam(OAM);
+    }
+
+    /**
+     * restores the state of the lcd controller. The render mode is kept, and
+     * the lines of the current image drawn before the snapshot are those
+     * drawn by this lcd controller, the following images being identical to
+     * those drawn after the snapshot.
+     */
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        nextNonIdleCycle = reader.readLong();
+        for (Reg r : REGS)
+            lcdBank.set(r, reader.readByte());
+        winY = reader.readByte();
+        copySource = reader.readInt();
+        copyEndCycle = reader.readLong();
+        reader.readRam(videoRam);
+        reader.readRam(OAM);
+        updateNextEffectCycle();
+        tileCache.invalidateAll();
+        spriteBucketsSpriteSize = 0;
+
+        if (renderMode == RenderMode.LCD_IMAGE && nextImageBuilder == null)
+            nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+        else if (renderMode == RenderMode.FRAME_BUFFER && backBuffer == null)
+            backBuffer = new byte[LCD_WIDTH * LCD_HEIGHT];
+    }
+
+    /**
+     * Copies at once the source of a copy to the object attributes memory
+     * requested at the previous cycle, and ends the copy in progress at the
+     * cycle of its last byte. As the whole source is read at the first cycle,
+     * a writing to the source or a change of the rom bank during the copy has
+     * no effect on the bytes copied, while it did on the following ones when
+     * each byte was read at its own cycle.
      * Manages the activation of the screen when required, and set LY
      * to 153 so it can be set to 0 in mode 0.
-     * Determines if the lcd controller
-     * needs to do something during the given cycle, and if so, calls the method
-     * reallyCycle.
+     * Performs the mode changes up to the given cycle.
      * 
      * @param cycle
      *            the cycle
      */
     @Override
     public void cycle(long cycle) {
-        if (copyDestination != OAM_END)
-            write(copyDestination++, bus.read(copySource++));
+        if (copySource != NO_COPY) {
+            bus.read(copySource, copyBuffer, 0, copyBuffer.length);
+            for (int i = 0; i < copyBuffer.length; i++)
+                writeOam(i, Byte.toUnsignedInt(copyBuffer[i]));
+            copySource = NO_COPY;
+            copyEndCycle = cycle + copyBuffer.length - 1;
+        }
+        if (copyEndCycle != NO_COPY && cycle >= copyEndCycle)
+            copyEndCycle = NO_COPY;
 
         if (nextNonIdleCycle == Long.MAX_VALUE
                 && lcdBank.testBit(Reg.LCDC, LcdcBits.LCD_STATUS)) {
@@ -233,15 +535,117 @@ public final class LcdController implements Component, Clocked {
             lcdBank.set(Reg.LY, 153);
         }
 
-        if (cycle == nextNonIdleCycle)
-            reallyCycle(cycle);
+        lastCycle = cycle;
+        sync(cycle);
+    }
+
+    /**
+     * return the given cycle if a copy has been requested or if the screen has
+     * just been activated, and the first of the cycle of the next mode change
+     * having an effect and of the end of the copy in progress otherwise.
+     */
+    @Override
+    public long nextEventCycle(long cycle) {
+        if (copySource != NO_COPY)
+            return cycle;
+        if (copyEndCycle != NO_COPY)
+            return Math.min(Math.max(cycle, copyEndCycle),
+                    nextModeCycle(cycle));
+        return nextModeCycle(cycle);
+    }
+
+    private long nextModeCycle(long cycle) {
+        if (nextNonIdleCycle == Long.MAX_VALUE)
+            return lcdBank.testBit(Reg.LCDC, LcdcBits.LCD_STATUS) ? cycle
+                    : Long.MAX_VALUE;
+
+        return Math.max(cycle, nextEffectCycle);
+    }
+
+    /**
+     * performs the mode changes happening up to the given cycle.
+     */
+    private void sync(long cycle) {
+        if (nextNonIdleCycle > cycle)
+            return;
+        do {
+            reallyCycle(nextNonIdleCycle);
+        } while (nextNonIdleCycle <= cycle);
+        updateNextEffectCycle();
+    }
+
+    /**
+     * computes the cycle of the next mode change which has an effect other
+     * than changing LY and STAT: drawing a line, starting or ending an image,
+     * or requesting an interruption. It follows the same transitions as
+     * reallyCycle, without performing them.
+     */
+    private void updateNextEffectCycle() {
+        long cycle = nextNonIdleCycle;
+        if (cycle == Long.MAX_VALUE) {
+            nextEffectCycle = Long.MAX_VALUE;
+            return;
+        }
+        int mode = getMode();
+        int ly = lcdBank.get(Reg.LY);
+        while (true) {
+            switch (mode) {
+            case 2:
+                if (renderMode != RenderMode.NONE)
+                    break;
+                mode = 3;
+                cycle += 43;
+                continue;
+            case 3:
+                if (lcdBank.testBit(Reg.STAT, StatBits.INT_MODE0))
+                    break;
+                mode = 0;
+                cycle += 51;
+                continue;
+            case 0:
+                if (ly == LCD_HEIGHT - 1)
+                    break;
+                ly = (ly + 1) % (LY_MAX + 1);
+                if (ly == 0 || lycInterrupt(ly)
+                        || lcdBank.testBit(Reg.STAT, StatBits.INT_MODE2))
+                    break;
+                mode = 2;
+                cycle += 20;
+                continue;
+            default:
+                if (ly < LCD_HEIGHT)
+                    break;
+                ly = (ly + 1) % LY_MAX;
+                if (lycInterrupt(ly))
+                    break;
+                cycle += 114;
+                continue;
+            }
+            nextEffectCycle = cycle;
+            return;
+        }
+    }
+
+    private boolean lycInterrupt(int ly) {
+        return ly == lcdBank.get(Reg.LYC)
+                && lcdBank.testBit(Reg.STAT, StatBits.INT_LYC);
+    }
+
+    private void writeOam(int index, int data) {
+        if (index % ATTRIBUTE_BYTES_PER_SPRITE <= spritesAttributes.X_COORD
+                .ordinal() && OAM.read(index) != data)
+            spriteBucketsSpriteSize = 0;
+        OAM.write(index, data);
     }
 
     private void reallyCycle(long cycle) {
         switch (getMode()) {
         case 2: {
             setMode(3);
-            computeLine(lcdBank.get(Reg.LY));
+            if (renderMode == RenderMode.LCD_IMAGE)
+                computeLine(lcdBank.get(Reg.LY));
+            else if (renderMode == RenderMode.FRAME_BUFFER)
+                renderLine(lcdBank.get(Reg.LY));
             nextNonIdleCycle += 43;
         }
             break;
@@ -254,7 +658,7 @@ public final class LcdController implements Component, Clocked {
             if (lcdBank.get(Reg.LY) == LCD_HEIGHT - 1) {
                 setMode(1);
                 cpu.requestInterrupt(Interrupt.VBLANK);
-                currentImage = nextImageBuilder.build();
+                endImage();
 
                 lcdBank.set(Reg.LY, LCD_HEIGHT);
                 LycEqLy();
@@ -266,9 +670,7 @@ public final class LcdController implements Component, Clocked {
 
                 setMode(2);
                 if (lcdBank.get(Reg.LY) == 0) {
-                    nextImageBuilder = new LcdImage.Builder(LCD_WIDTH,
-                            LCD_HEIGHT);
-                    winY = 0;
+                    startImage();
                 }
                 nextNonIdleCycle += 20;
             }
@@ -281,8 +683,7 @@ public final class LcdController implements Component, Clocked {
                 nextNonIdleCycle += 114;
             } else {
                 setMode(2);
-                nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
-                winY = 0;
+                startImage();
                 nextNonIdleCycle += 20;
             }
         }
@@ -290,6 +691,53 @@ public final class LcdController implements Component, Clocked {
 
     }
 
+    private void startImage() {
+        renderMode = nextRenderMode;
+        switch (renderMode) {
+        case LCD_IMAGE:
+            nextImageBuilder = new LcdImage.Builder(LCD_WIDTH, LCD_HEIGHT);
+            break;
+        case FRAME_BUFFER:
+            if (backBuffer == null)
+                backBuffer = new byte[LCD_WIDTH * LCD_HEIGHT];
+            else
+                Arrays.fill(backBuffer, (byte) 0);
+            break;
+        case NONE:
+            break;
+        }
+        winY = 0;
+    }
+
+    private void endImage() {
+        switch (renderMode) {
+        case LCD_IMAGE:
+            currentImage = nextImageBuilder.build();
+            ++imagesDrawn;
+            break;
+        case FRAME_BUFFER:
+            byte[] image = frontBuffer;
+            frontBuffer = backBuffer;
+            backBuffer = image;
+            currentImage = null;
+            ++imagesDrawn;
+            break;
+        case NONE:
+            ++imagesSkipped;
+            return;
+        }
+
+        boolean[] lines = changedLines;
+        changedLines = nextChangedLines;
+        nextChangedLines = lines;
+        imageChanged = false;
+        for (boolean changed : changedLines)
+            imageChanged |= changed;
+        if (!imageChanged)
+            ++imagesUnchanged;
+        displayedMode = renderMode;
+    }
+
     private void LycEqLy() {
         if (lcdBank.get(Reg.LY) == lcdBank.get(Reg.LYC)) {
             lcdBank.setBit(Reg.STAT, StatBits.LYC_EQ_LY, true);
@@ -329,49 +777,63 @@ public final class LcdController implements Component, Clocked {
     private void computeLine(int y) {
 
         int bgLineIndex = Bits.clip(8, lcdBank.get(Reg.SCY) + y);
-        LcdImageLine bgLine = extractBgLine(bgLineIndex);
+        if (lcdBank.testBit(Reg.LCDC, LcdcBits.BG))
+            imageLine.extractWrapped(
+                    extractLine(bgLine, bgLineIndex, LcdcBits.BG_AREA),
+                    lcdBank.get(Reg.SCX));
+        else
+            imageLine.clear();
 
         int WX = Math.max(0, lcdBank.get(Reg.WX) - 7);
 
         if ((lcdBank.testBit(Reg.LCDC, LcdcBits.WIN)) && WX < LCD_WIDTH
                 && y >= lcdBank.get(Reg.WY)) {
 
-            LcdImageLine winLine = extractLine(winY, WIN_LINE_SIZE,
-                    LcdcBits.WIN_AREA);
+            extractLine(winLine, winY, LcdcBits.WIN_AREA);
             winY++;
-            bgLine = bgLine.join(winLine.shift(WX), WX);
+            imageLine.join(winLine.shift(WX), WX);
         }
 
         if (lcdBank.testBit(Reg.LCDC, LcdcBits.OBJ)) {
             int size = Bits.test(lcdBank.get(Reg.LCDC), LcdcBits.OBJ_SIZE)
                     ? 16
                     : 8;
-            int[] spritesList = spritesIntersectingLine(y, size);
-            
-            LcdImageLine spritesBGLine = extractSpritesLine(y, spritesList,
-                    size, true);
-            LcdImageLine spritesFGLine = extractSpritesLine(y, spritesList,
-                    size, false);
-            BitVector bgOpacity = bgLine.opacity()
-                    .or(spritesBGLine.opacity().not());
+            int nbOfSprites = spritesIntersectingLine(y, size);
+
+            extractSpritesLine(spritesBgLine, y, nbOfSprites, size, true);
+            extractSpritesLine(spritesFgLine, y, nbOfSprites, size, false);
+            bgOpacity.set(spritesBgLine.opacity()).not()
+                    .or(imageLine.opacity());
 
-            bgLine = spritesBGLine.below(bgLine, bgOpacity)
-                    .below(spritesFGLine);
+            setImageLine(y, spritesBgLine.below(imageLine, bgOpacity)
+                    .below(spritesFgLine).toLcdImageLine());
+        } else {
+            setImageLine(y, imageLine.toLcdImageLine());
         }
-        nextImageBuilder.setLine(y, bgLine);
     }
 
-    private LcdImageLine extractBgLine(int lineIndex) {
-        if ((lcdBank.testBit(Reg.LCDC, LcdcBits.BG)))
-            return extractLine(lineIndex, BG_LINE_SIZE, LcdcBits.BG_AREA)
-                    .extractWrapped(LCD_WIDTH, lcdBank.get(Reg.SCX));
-        else
-            return emptyLine();
+    /**
+     * sets the line of given index of the image being built, and records
+     * whether its colors differ from those of the same line of the image
+     * currently displayed, its opacity being irrelevant once drawn.
+     */
+    private void setImageLine(int y, LcdImageLine line) {
+        if (displayedMode == RenderMode.LCD_IMAGE) {
+            LcdImageLine displayed = currentImage.line(y);
+            nextChangedLines[y] = !line.msb().equals(displayed.msb())
+                    || !line.lsb().equals(displayed.lsb());
+        } else {
+            nextChangedLines[y] = true;
+        }
+        nextImageBuilder.setLine(y, line);
     }
 
-    private LcdImageLine extractLine(int lineIndex, int size, Bit area) {
-        LcdImageLine.Builder lineBuilder = new LcdImageLine.Builder(size);
-
+    /**
+     * writes into the given line, of the size of the background or of the
+     * window, the line of given index of the given area, and returns it.
+     */
+    private MutableLcdImageLine extractLine(MutableLcdImageLine tileLine,
+            int lineIndex, Bit area) {
         int tileSource = lcdBank.testBit(Reg.LCDC, LcdcBits.TILE_SOURCE) ? 1
                 : 0;
         int tileSourceStart = AddressMap.TILE_SOURCE[tileSource];
@@ -379,20 +841,20 @@ public final class LcdController implements Component, Clocked {
         int address = memoryStart(area)
                 + TILES_PER_LINE * (lineIndex / TILE_EDGE_SIZE);
 
-        for (int i = 0; i < size / Byte.SIZE; i++) {
+        for (int i = 0; i < tileLine.size() / Byte.SIZE; i++) {
 
             int tileIndex = read(address + i);
 
             if (tileSource == 0)
                 tileIndex = Bits.clip(8, tileIndex + 0x80);
 
-            lineBuilder.setBytes(i,
+            tileLine.setBytes(i,
                     getTileLineVector(tileSourceStart, tileIndex, tileLineIndex,
                             true),
                     getTileLineVector(tileSourceStart, tileIndex, tileLineIndex,
                             false));
         }
-        return lineBuilder.build().mapColors(lcdBank.get(Reg.BGP));
+        return tileLine.mapColors(lcdBank.get(Reg.BGP));
     }
 
     private int memoryStart(Bit area) {
@@ -400,26 +862,30 @@ public final class LcdController implements Component, Clocked {
         return AddressMap.BG_DISPLAY_DATA[start];
     }
 
-    private LcdImageLine extractSpritesLine(int y, int[] spritesList, int size,
-            boolean background) {
+    /**
+     * writes into the given line the sprites of lineSprites intersecting the
+     * line of given index, behind or in front of the background.
+     */
+    private void extractSpritesLine(MutableLcdImageLine fullSpriteLine,
+            int y, int nbOfSprites, int size, boolean background) {
 
-        LcdImageLine fullSpriteLine = emptyLine();
+        fullSpriteLine.clear();
 
         int spriteTileSourceStart = AddressMap.TILE_SOURCE[1];
 
-        for (int spriteIndex : spritesList) {
+        for (int j = 0; j < nbOfSprites; j++) {
+            int spriteIndex = lineSprites[j];
 
-            int spriteMemoryIndex = OAM_START
-                    + ATTRIBUTE_BYTES_PER_SPRITE * spriteIndex;
+            int spriteMemoryIndex = ATTRIBUTE_BYTES_PER_SPRITE * spriteIndex;
 
-            int spriteSpec = read(
+            int spriteSpec = OAM.read(
                     spriteMemoryIndex + spritesAttributes.SPECS.ordinal());
 
             if (Bits.test(spriteSpec, SpriteSpec.BEHIND_BG) == background) {
 
-                int spriteOrdinate = read(spriteMemoryIndex) - 16;
+                int spriteOrdinate = OAM.read(spriteMemoryIndex) - 16;
 
-                int tileIndex = read(
+                int tileIndex = OAM.read(
                         spriteMemoryIndex + spritesAttributes.INDEX.ordinal());
 
                 int tileLineIndex = ((Bits.test(spriteSpec, SpriteSpec.FLIP_V)
@@ -440,60 +906,233 @@ public final class LcdController implements Component, Clocked {
                         : Reg.OBP0;
                 int palette = lcdBank.get(paletteReg);
 
-                int xCoord = read(
+                int xCoord = OAM.read(
                         spriteMemoryIndex + spritesAttributes.X_COORD.ordinal())
                         - 8;
 
-                LcdImageLine spriteLine = new LcdImageLine.Builder(LCD_WIDTH)
-                        .setBytes(0, tileLineMsb, tileLineLsb).build()
-                        .shift(xCoord)
-                        .mapColors(palette);
+                spriteLine.clear().setBytes(0, tileLineMsb, tileLineLsb)
+                        .shift(xCoord).mapColors(palette);
 
-                fullSpriteLine = spriteLine.below(fullSpriteLine);
+                fullSpriteLine.above(spriteLine);
             }
         }
-        return fullSpriteLine;
     }
 
-    private int[] spritesIntersectingLine(int y, int size) {
-        int[] sprites = new int[10];
-        int nbOfSprites = 0;
+    /**
+     * stores in lineSprites the indexes of the (at most 10) first sprites
+     * intersecting the line of given index, sorted by abscissa, and returns
+     * their number.
+     */
+    private int spritesIntersectingLine(int y, int size) {
+        if (size != spriteBucketsSpriteSize)
+            fillSpriteBuckets(size);
+        int nbOfSprites = spriteBucketSizes[y];
+        System.arraycopy(spriteBuckets, y * MAX_SPRITES_PER_LINE, lineSprites,
+                0, nbOfSprites);
+        return nbOfSprites;
+    }
+
+    /**
+     * computes the sprites of the given size intersecting every line, in a
+     * single pass over the object attribute memory.
+     */
+    private void fillSpriteBuckets(int size) {
+        Arrays.fill(spriteBucketSizes, 0);
 
         for (int i = 0; i < NB_OF_SPRITES; i++) {
+            int spriteMemoryIndex = ATTRIBUTE_BYTES_PER_SPRITE * i;
+            int spriteOrdinate = OAM.read(spriteMemoryIndex) - 16;
+            int key = (OAM.read(spriteMemoryIndex
+                    + spritesAttributes.X_COORD.ordinal()) << Byte.SIZE) | i;
+
+            int end = Math.min(LCD_HEIGHT, spriteOrdinate + size);
+            for (int y = Math.max(0, spriteOrdinate); y < end; y++) {
+                if (spriteBucketSizes[y] < MAX_SPRITES_PER_LINE)
+                    spriteBuckets[y * MAX_SPRITES_PER_LINE
+                            + spriteBucketSizes[y]++] = key;
+            }
+        }
+
+        for (int y = 0; y < LCD_HEIGHT; y++) {
+            int start = y * MAX_SPRITES_PER_LINE;
+            int end = start + spriteBucketSizes[y];
+            Arrays.sort(spriteBuckets, start, end);
+            for (int j = start; j < end; j++)
+                spriteBuckets[j] = Bits.clip(8, spriteBuckets[j]);
+        }
+        spriteBucketsSpriteSize = size;
+    }
 
-            int spriteMemoryIndex = OAM_START + ATTRIBUTE_BYTES_PER_SPRITE * i;
-            int spriteOrdinate = read(spriteMemoryIndex) - 16;
+    private int getTileLineVector(int tileSourceStart, int tileIndex,
+            int tileLineIndex, boolean msb) {
+
+        int row = tileRow(tileSourceStart, tileIndex, tileLineIndex);
+        return msb ? TileCache.msb(row) : TileCache.lsb(row);
+    }
 
-            if (nbOfSprites < sprites.length && y >= spriteOrdinate
-                    && y < spriteOrdinate + size)
+    private int tileRow(int tileSourceStart, int tileIndex,
+            int tileLineIndex) {
+        int address = tileSourceStart + BYTES_PER_TILE * tileIndex
+                + 2 * tileLineIndex;
+        return tileCache.row((address - VIDEO_RAM_START) / 2);
+    }
 
-                sprites[nbOfSprites++] = (read(spriteMemoryIndex
-                        + spritesAttributes.X_COORD.ordinal()) << Byte.SIZE)
-                        | i;
+    /**
+     * draws the line of given index directly in the back buffer, giving the
+     * same colors as computeLine.
+     */
+    private void renderLine(int y) {
+        int lineStart = y * LCD_WIDTH;
+        int palette = lcdBank.get(Reg.BGP);
+
+        if (lcdBank.testBit(Reg.LCDC, LcdcBits.BG)) {
+            renderTiles(Bits.clip(8, lcdBank.get(Reg.SCY) + y),
+                    LcdcBits.BG_AREA, 0, lcdBank.get(Reg.SCX), lineStart,
+                    palette);
+        } else {
+            Arrays.fill(lineColors, 0);
+            Arrays.fill(backBuffer, lineStart, lineStart + LCD_WIDTH, (byte) 0);
         }
-        Arrays.sort(sprites, 0, nbOfSprites);
 
-        int[] spriteIndex = new int[nbOfSprites];
+        int WX = Math.max(0, lcdBank.get(Reg.WX) - 7);
+
+        if ((lcdBank.testBit(Reg.LCDC, LcdcBits.WIN)) && WX < LCD_WIDTH
+                && y >= lcdBank.get(Reg.WY)) {
+            renderTiles(winY, LcdcBits.WIN_AREA, WX, -WX, lineStart, palette);
+            winY++;
+        }
 
-        for (int j = 0; j < spriteIndex.length; j++)
-            spriteIndex[j] = Bits.clip(8, sprites[j]);
+        if (lcdBank.testBit(Reg.LCDC, LcdcBits.OBJ)) {
+            int size = Bits.test(lcdBank.get(Reg.LCDC), LcdcBits.OBJ_SIZE)
+                    ? 16
+                    : 8;
+            renderSprites(y, spritesIntersectingLine(y, size), size,
+                    lineStart);
+        }
 
-        return spriteIndex;
+        nextChangedLines[y] = displayedMode != RenderMode.FRAME_BUFFER
+                || Arrays.mismatch(backBuffer, lineStart,
+                        lineStart + LCD_WIDTH, frontBuffer, lineStart,
+                        lineStart + LCD_WIDTH) >= 0;
     }
 
-    private int getTileLineVector(int tileSourceStart, int tileIndex,
-            int tileLineIndex, boolean msb) {
+    /**
+     * draws in the back buffer, from the given abscissa to the end of the
+     * line, the pixels of the line of tiles of given index, shifted by the
+     * given offset and wrapped around the 256 pixels of the background. The
+     * colors of the pixels before their mapping by the palette are stored in
+     * lineColors, as they determine the opacity of the background.
+     */
+    private void renderTiles(int lineIndex, Bit area, int fromX, int offset,
+            int lineStart, int palette) {
+        int tileSource = lcdBank.testBit(Reg.LCDC, LcdcBits.TILE_SOURCE) ? 1
+                : 0;
+        int tileSourceStart = AddressMap.TILE_SOURCE[tileSource];
+        int tileLineIndex = lineIndex % TILE_EDGE_SIZE;
+        int address = memoryStart(area)
+                + TILES_PER_LINE * (lineIndex / TILE_EDGE_SIZE);
 
-        int address = tileSourceStart + BYTES_PER_TILE * tileIndex
-                + 2 * tileLineIndex;
-        if (msb)
-            address++;
+        int row = 0;
+        for (int x = fromX; x < LCD_WIDTH; x++) {
+            int bgX = (x + offset) & (BG_LINE_SIZE - 1);
+            if (x == fromX || bgX % TILE_EDGE_SIZE == 0) {
+                int tileIndex = readVideoRam(
+                        address + bgX / TILE_EDGE_SIZE);
+                if (tileSource == 0)
+                    tileIndex = Bits.clip(8, tileIndex + 0x80);
+                row = tileRow(tileSourceStart, tileIndex, tileLineIndex);
+            }
+            int color = TileCache.color(row, bgX % TILE_EDGE_SIZE);
+            lineColors[x] = color;
+            backBuffer[lineStart + x] = (byte) mapColor(palette, color);
+        }
+    }
+
+    /**
+     * draws in the back buffer the given number of sprites of lineSprites,
+     * the first ones having priority over the following ones. The sprites
+     * behind the background only appear where the color of the background is
+     * 0 before its mapping by the palette.
+     */
+    private void renderSprites(int y, int nbOfSprites, int size,
+            int lineStart) {
+        Arrays.fill(bgSpritesLine, TRANSPARENT);
+        Arrays.fill(fgSpritesLine, TRANSPARENT);
+
+        for (int j = 0; j < nbOfSprites; j++) {
+            int spriteMemoryIndex = ATTRIBUTE_BYTES_PER_SPRITE * lineSprites[j];
+            int spriteSpec = OAM
+                    .read(spriteMemoryIndex + spritesAttributes.SPECS.ordinal());
+            int[] spritesLine = Bits.test(spriteSpec, SpriteSpec.BEHIND_BG)
+                    ? bgSpritesLine
+                    : fgSpritesLine;
+
+            int spriteOrdinate = OAM.read(spriteMemoryIndex) - 16;
+            int tileIndex = OAM
+                    .read(spriteMemoryIndex + spritesAttributes.INDEX.ordinal());
+            int tileLineIndex = Bits.test(spriteSpec, SpriteSpec.FLIP_V)
+                    ? size - 1 - (y - spriteOrdinate)
+                    : y - spriteOrdinate;
+            int row = tileRow(AddressMap.TILE_SOURCE[1], tileIndex,
+                    tileLineIndex);
+            boolean flipH = Bits.test(spriteSpec, SpriteSpec.FLIP_H);
+
+            int palette = lcdBank.get(Bits.test(spriteSpec, SpriteSpec.PALETTE)
+                    ? Reg.OBP1
+                    : Reg.OBP0);
+            int xCoord = OAM.read(
+                    spriteMemoryIndex + spritesAttributes.X_COORD.ordinal())
+                    - 8;
+
+            for (int i = 0; i < TILE_EDGE_SIZE; i++) {
+                int x = xCoord + i;
+                if (x >= 0 && x < LCD_WIDTH
+                        && spritesLine[x] == TRANSPARENT) {
+                    int color = TileCache.color(row,
+                            flipH ? TILE_EDGE_SIZE - 1 - i : i);
+                    if (color != 0)
+                        spritesLine[x] = mapColor(palette, color);
+                }
+            }
+        }
 
-        return Bits.reverse8(read(address));
+        for (int x = 0; x < LCD_WIDTH; x++) {
+            if (fgSpritesLine[x] != TRANSPARENT)
+                backBuffer[lineStart + x] = (byte) fgSpritesLine[x];
+            else if (bgSpritesLine[x] != TRANSPARENT && lineColors[x] == 0)
+                backBuffer[lineStart + x] = (byte) bgSpritesLine[x];
+        }
     }
 
-    private LcdImageLine emptyLine() {
-        return new LcdImageLine.Builder(LCD_WIDTH).build();
+    private int readVideoRam(int address) {
+        return videoRam.read(address - VIDEO_RAM_START);
+    }
+
+    private static int mapColor(int palette, int color) {
+        return (palette >>> (2 * color)) & 0b11;
+    }
+
+    /**
+     * return the image whose pixels have the given colors, line by line.
+     */
+    private static LcdImage imageOf(byte[] frame) {
+        LcdImage.Builder imageBuilder = new LcdImage.Builder(LCD_WIDTH,
+                LCD_HEIGHT);
+        for (int y = 0; y < LCD_HEIGHT; y++) {
+            LcdImageLine.Builder lineBuilder = new LcdImageLine.Builder(
+                    LCD_WIDTH);
+            for (int i = 0; i < LCD_WIDTH / Byte.SIZE; i++) {
+                int msb = 0, lsb = 0;
+                for (int j = 0; j < Byte.SIZE; j++) {
+                    int color = frame[y * LCD_WIDTH + i * Byte.SIZE + j];
+                    msb |= (color >>> 1) << j;
+                    lsb |= (color & 1) << j;
+                }
+                lineBuilder.setBytes(i, msb, lsb);
+            }
+            imageBuilder.setLine(y, lineBuilder.build());
+        }
+        return imageBuilder.build();
     }
 
 }
\ No newline at end of file
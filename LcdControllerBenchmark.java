@@ -0,0 +1,83 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+/**
+ * measures the number of lines drawn per second by the LCD controller, in
+ * each render mode, from video and object attribute memories filled from a
+ * fixed seed. The background, the window and the sprites are all enabled.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class LcdControllerBenchmark {
+
+    private static final long SEED = 0x6C6364L;
+
+    @Param({ "LCD_IMAGE", "FRAME_BUFFER", "NONE" })
+    public LcdController.RenderMode mode;
+
+    private LcdController lcdc;
+    private long cycle;
+
+    @Setup
+    public void setUp() {
+        Random rng = new Random(SEED);
+        Bus bus = new Bus();
+        Cpu cpu = new Cpu();
+        cpu.attachTo(bus);
+        lcdc = new LcdController(cpu);
+        lcdc.attachTo(bus);
+        lcdc.setRenderMode(mode);
+
+        for (int a = AddressMap.VIDEO_RAM_START; a < AddressMap.VIDEO_RAM_END; a++)
+            bus.write(a, rng.nextInt(0x100));
+        for (int a = AddressMap.OAM_START; a < AddressMap.OAM_END; a++)
+            bus.write(a, rng.nextInt(0x100));
+        // SCY, SCX, BGP, OBP0, OBP1, WY and WX
+        int[] registers = { 2, 3, 7, 8, 9, 10, 11 };
+        int[] values = { 0x25, 0x13, 0xE4, 0xD2, 0x1B, 72, 87 };
+        for (int i = 0; i < registers.length; i++)
+            bus.write(AddressMap.REGS_LCDC_START + registers[i], values[i]);
+        // screen, window, background and sprites on, window tiles at 9C00
+        bus.write(AddressMap.REGS_LCDC_START, 0xF3);
+        cycle = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LcdController.LCD_HEIGHT)
+    public long drawImage() {
+        long end = cycle + LcdController.CYCLES_PER_IMAGE;
+        while (cycle < end) {
+            lcdc.cycle(cycle);
+            cycle = lcdc.nextEventCycle(cycle + 1);
+        }
+        return cycle;
+    }
+}
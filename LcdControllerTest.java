@@ -0,0 +1,237 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.Bus;
+import ch.epfl.gameboj.component.cpu.Cpu;
+import ch.epfl.gameboj.component.memory.Ram;
+import ch.epfl.gameboj.component.memory.RamController;
+
+class LcdControllerTest {
+
+    private static final long CYCLES_PER_IMAGE = 17556;
+
+    private static LcdController newIdleLcdController(long seed,
+            LcdController.RenderMode mode) {
+        Random rng = new Random(seed);
+        Bus bus = new Bus();
+        Cpu cpu = new Cpu();
+        cpu.attachTo(bus);
+        LcdController lcdc = new LcdController(cpu);
+        lcdc.attachTo(bus);
+        lcdc.setRenderMode(mode);
+
+        for (int a = AddressMap.VIDEO_RAM_START; a < AddressMap.VIDEO_RAM_END; a++)
+            bus.write(a, rng.nextInt(0x100));
+        for (int a = AddressMap.OAM_START; a < AddressMap.OAM_END; a++)
+            bus.write(a, rng.nextInt(0x100));
+        // SCY, SCX, LYC, BGP, OBP0, OBP1, WY and WX
+        for (int r : new int[] { 2, 3, 5, 7, 8, 9, 10, 11 })
+            bus.write(AddressMap.REGS_LCDC_START + r, rng.nextInt(0x100));
+        bus.write(AddressMap.REGS_LCDC_START + 10, rng.nextInt(LcdController.LCD_HEIGHT));
+        bus.write(AddressMap.REGS_LCDC_START + 11, rng.nextInt(LcdController.LCD_WIDTH + 7));
+        bus.write(AddressMap.REGS_LCDC_START, rng.nextInt(0x100) | 0x80);
+        return lcdc;
+    }
+
+    private static LcdController newLcdController(long seed,
+            LcdController.RenderMode mode) {
+        LcdController lcdc = newIdleLcdController(seed, mode);
+        runImages(lcdc, 0, 2);
+        return lcdc;
+    }
+
+    private static void runImages(LcdController lcdc, int first, int count) {
+        for (long c = first * CYCLES_PER_IMAGE; c < (first + count) * CYCLES_PER_IMAGE; c++)
+            lcdc.cycle(c);
+    }
+
+    // moves the sprites, and changes their abscissa and attributes
+    private static void moveSprites(LcdController lcdc, long seed) {
+        Random rng = new Random(~seed);
+        for (int i = 0; i < 60; i++)
+            lcdc.write(AddressMap.OAM_START + rng.nextInt(AddressMap.OAM_RAM_SIZE),
+                    rng.nextInt(0x100));
+    }
+
+    @Test
+    void frameBufferModeDrawsSameImages() {
+        for (long seed = 0; seed < 50; seed++) {
+            LcdImage image = newLcdController(seed,
+                    LcdController.RenderMode.LCD_IMAGE).currentImage();
+            LcdController lcdc = newLcdController(seed,
+                    LcdController.RenderMode.FRAME_BUFFER);
+            byte[] frame = lcdc.currentFrame();
+            LcdImage frameImage = lcdc.currentImage();
+            for (int y = 0; y < LcdController.LCD_HEIGHT; y++) {
+                for (int x = 0; x < LcdController.LCD_WIDTH; x++) {
+                    assertEquals(image.get(x, y),
+                            frame[y * LcdController.LCD_WIDTH + x]);
+                    assertEquals(image.get(x, y), frameImage.get(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void noneModeSkipsImagesButKeepsRegisters() {
+        for (long seed = 0; seed < 50; seed++) {
+            LcdController drawing = newLcdController(seed,
+                    LcdController.RenderMode.FRAME_BUFFER);
+            LcdController skipping = newLcdController(seed,
+                    LcdController.RenderMode.NONE);
+            for (int a = AddressMap.REGS_LCDC_START; a < AddressMap.REGS_LCDC_END; a++)
+                assertEquals(drawing.read(a), skipping.read(a));
+            assertEquals(0, drawing.imagesSkipped());
+            assertEquals(0, skipping.imagesDrawn());
+            assertEquals(drawing.imagesDrawn(), skipping.imagesSkipped());
+        }
+    }
+
+    @Test
+    void spritesMovedBetweenImagesAreDrawnAtTheirNewPosition() {
+        for (long seed = 0; seed < 50; seed++) {
+            LcdController moved = newLcdController(seed,
+                    LcdController.RenderMode.FRAME_BUFFER);
+            moveSprites(moved, seed);
+            runImages(moved, 2, 2);
+
+            LcdController fresh = newIdleLcdController(seed,
+                    LcdController.RenderMode.FRAME_BUFFER);
+            moveSprites(fresh, seed);
+            runImages(fresh, 0, 2);
+
+            assertArrayEquals(fresh.currentFrame(), moved.currentFrame());
+        }
+    }
+
+    @Test
+    void changedLinesAreThoseDifferingFromPreviousImage() {
+        for (LcdController.RenderMode mode : new LcdController.RenderMode[] {
+                LcdController.RenderMode.LCD_IMAGE,
+                LcdController.RenderMode.FRAME_BUFFER }) {
+            for (long seed = 0; seed < 50; seed++) {
+                Random rng = new Random(seed);
+                LcdController lcdc = newLcdController(seed, mode);
+                long unchanged = lcdc.imagesUnchanged();
+                for (int image = 2; image < 6; image++) {
+                    LcdImage previous = lcdc.currentImage();
+                    if (image % 2 == 0) {
+                        for (int i = 0; i < 4; i++)
+                            lcdc.write(AddressMap.VIDEO_RAM_START + rng.nextInt(
+                                    AddressMap.VIDEO_RAM_SIZE), rng.nextInt(0x100));
+                    }
+                    runImages(lcdc, image, 1);
+
+                    LcdImage current = lcdc.currentImage();
+                    boolean changed = false;
+                    for (int y = 0; y < LcdController.LCD_HEIGHT; y++) {
+                        boolean lineChanged = false;
+                        for (int x = 0; x < LcdController.LCD_WIDTH; x++)
+                            lineChanged |= previous.get(x, y) != current.get(x, y);
+                        assertEquals(lineChanged, lcdc.lineChanged(y));
+                        changed |= lineChanged;
+                    }
+                    assertEquals(changed, lcdc.imageChanged());
+                    if (!changed)
+                        unchanged++;
+                    assertEquals(unchanged, lcdc.imagesUnchanged());
+                }
+            }
+        }
+    }
+
+    @Test
+    void copyToOamDuringImageIsDrawnTheSameInBothModes() {
+        for (long seed = 0; seed < 50; seed++) {
+            LcdController[] lcdcs = {
+                    newLcdController(seed, LcdController.RenderMode.LCD_IMAGE),
+                    newLcdController(seed, LcdController.RenderMode.FRAME_BUFFER) };
+            long copyCycle = 2 * CYCLES_PER_IMAGE + 60 * 114;
+            for (LcdController lcdc : lcdcs) {
+                for (long c = 2 * CYCLES_PER_IMAGE; c < 3 * CYCLES_PER_IMAGE; c++) {
+                    // copies a page of the video memory, on the bus through
+                    // the controller, while the line 60 is drawn
+                    if (c == copyCycle)
+                        lcdc.write(AddressMap.REGS_LCDC_START + 6,
+                                0x80 + (int) (seed % 0x20));
+                    lcdc.cycle(c);
+                }
+            }
+            LcdImage image = lcdcs[0].currentImage();
+            byte[] frame = lcdcs[1].currentFrame();
+            for (int y = 0; y < LcdController.LCD_HEIGHT; y++) {
+                for (int x = 0; x < LcdController.LCD_WIDTH; x++)
+                    assertEquals(image.get(x, y),
+                            frame[y * LcdController.LCD_WIDTH + x]);
+            }
+        }
+    }
+
+    @Test
+    void copyToOamLastsOneCyclePerByte() {
+        Bus bus = new Bus();
+        Ram workRam = new Ram(AddressMap.WORK_RAM_SIZE);
+        new RamController(workRam, AddressMap.WORK_RAM_START).attachTo(bus);
+        LcdController lcdc = new LcdController(new Cpu());
+        lcdc.attachTo(bus);
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; i++)
+            bus.write(AddressMap.WORK_RAM_START + 0x100 + i, (i * 13) & 0xFF);
+        bus.write(AddressMap.OAM_START, 0x42);
+
+        lcdc.cycle(0);
+        bus.write(AddressMap.REGS_LCDC_START + 6, 0xC1);
+        assertEquals(0x42, bus.read(AddressMap.OAM_START));
+        assertEquals(1, lcdc.nextEventCycle(1));
+
+        long last = AddressMap.OAM_RAM_SIZE;
+        for (long c = 1; c < last; c++) {
+            lcdc.cycle(c);
+            assertEquals(last, lcdc.nextEventCycle(c + 1));
+            bus.write(AddressMap.OAM_START + 1, 0x42);
+            for (int a = AddressMap.OAM_START; a < AddressMap.OAM_END; a += 0x1F)
+                assertEquals(0xFF, bus.read(a));
+        }
+
+        lcdc.cycle(last);
+        assertEquals(Long.MAX_VALUE, lcdc.nextEventCycle(last + 1));
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; i++)
+            assertEquals((i * 13) & 0xFF, bus.read(AddressMap.OAM_START + i));
+    }
+
+    @Test
+    void copyToOamReadsWholeSourceAtFirstCycle() {
+        Bus bus = new Bus();
+        Ram workRam = new Ram(AddressMap.WORK_RAM_SIZE);
+        new RamController(workRam, AddressMap.WORK_RAM_START).attachTo(bus);
+        LcdController lcdc = new LcdController(new Cpu());
+        lcdc.attachTo(bus);
+        int source = AddressMap.WORK_RAM_START + 0x100;
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; i++)
+            bus.write(source + i, i);
+
+        lcdc.cycle(0);
+        bus.write(AddressMap.REGS_LCDC_START + 6, 0xC1);
+        lcdc.cycle(1);
+        // these bytes would have been read after the writings if each byte
+        // was read at its own cycle
+        for (int i = 10; i < AddressMap.OAM_RAM_SIZE; i += 10)
+            bus.write(source + i, 0xAA);
+        for (long c = 2; c <= AddressMap.OAM_RAM_SIZE; c++)
+            lcdc.cycle(c);
+
+        for (int i = 0; i < AddressMap.OAM_RAM_SIZE; i++)
+            assertEquals(i, bus.read(AddressMap.OAM_START + i));
+    }
+}
@@ -94,6 +94,20 @@ public final class LcdImage {
         }
     }
 
+    /**
+     * returns the line of given index.
+     *
+     * @param y
+     *            the index (must be positive and strictly inferior to the
+     *            height of this image)
+     * @throws IndexOutOfBoundsException
+     *             if the index is invalid
+     * @return the line of given index
+     */
+    LcdImageLine line(int y) {
+        return lineList.get(y);
+    }
+
     /**
      * checks if the given object is an LcdImage and if its line list is
      * equal to this image's line list.
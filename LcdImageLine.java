@@ -18,6 +18,12 @@ import static ch.epfl.gameboj.Preconditions.checkArgument;
 public final class LcdImageLine {
 
     private static final int STANDARD_PALETTE = 0b11100100;
+    private static final int PALETTE_COUNT = 1 << Byte.SIZE;
+
+    // for each palette, the truth tables of the msb (in the bits 4 to 7) and
+    // of the lsb (in the bits 0 to 3) of the transformed colors, shared by
+    // all lines
+    private static final byte[] PALETTE_TRUTH_TABLES = buildTruthTables();
 
     private final BitVector msb;
     private final BitVector lsb;
@@ -122,19 +128,31 @@ public final class LcdImageLine {
         if (palette == STANDARD_PALETTE) {
             return this;
         }
-        BitVector newLsb = new BitVector(size(), false);
-        BitVector newMsb = new BitVector(size(), false);
+        return new LcdImageLine(
+                BitVector.combine(msb, lsb, truthTable(palette, 1)),
+                BitVector.combine(msb, lsb, truthTable(palette, 0)), opacity);
+    }
+
+    /**
+     * return the truth table giving the bit of given index (1 for the msb, 0
+     * for the lsb) of the color of a pixel transformed by the given palette,
+     * an 8 bits value, according to the msb and lsb of its original color.
+     */
+    static int truthTable(int palette, int bit) {
+        return (PALETTE_TRUTH_TABLES[palette] >>> (4 * bit)) & 0b1111;
+    }
 
-        for (int i = 0; i < 4; i++) {
-            BitVector l = Bits.test(i, 0) ? lsb : lsb.not();
-            BitVector m = Bits.test(i, 1) ? msb : msb.not();
-            BitVector mask = m.and(l);
-            newMsb = newMsb.or(mask
-                    .and(new BitVector(size(), Bits.test(palette, 2 * i + 1))));
-            newLsb = newLsb.or(
-                    mask.and(new BitVector(size(), Bits.test(palette, 2 * i))));
+    private static byte[] buildTruthTables() {
+        byte[] tables = new byte[PALETTE_COUNT];
+        for (int palette = 0; palette < PALETTE_COUNT; palette++) {
+            int table = 0;
+            for (int color = 0; color < 4; color++) {
+                table |= Bits.extract(palette, 2 * color, 1) << color;
+                table |= Bits.extract(palette, 2 * color + 1, 1) << (4 + color);
+            }
+            tables[palette] = (byte) table;
         }
-        return new LcdImageLine(newMsb, newLsb, opacity);
+        return tables;
     }
 
     /**
@@ -0,0 +1,88 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.epfl.gameboj.bits.BitVector;
+import ch.epfl.gameboj.bits.Bits;
+
+/**
+ * measures the number of lines per second whose colors are transformed by a
+ * palette, by the word by word combination of LcdImageLine and
+ * MutableLcdImageLine, compared with the former computation of four masks
+ * with a vector operation each.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2)
+@State(Scope.Thread)
+public class LcdImageLineBenchmark {
+
+    private static final long SEED = 0x6C696EL;
+    private static final int PALETTE = 0b00011011;
+
+    @Param({ "160", "256" })
+    public int size;
+
+    private LcdImageLine line;
+    private MutableLcdImageLine mutableLine;
+
+    @Setup
+    public void setUp() {
+        Random rng = new Random(SEED);
+        LcdImageLine.Builder b = new LcdImageLine.Builder(size);
+        mutableLine = new MutableLcdImageLine(size);
+        for (int i = 0; i < size / Byte.SIZE; i++) {
+            int msb = rng.nextInt(0x100), lsb = rng.nextInt(0x100);
+            b.setBytes(i, msb, lsb);
+            mutableLine.setBytes(i, msb, lsb);
+        }
+        line = b.build();
+    }
+
+    @Benchmark
+    public LcdImageLine mapColors() {
+        return line.mapColors(PALETTE);
+    }
+
+    @Benchmark
+    public MutableLcdImageLine mapColorsInPlace() {
+        return mutableLine.mapColors(PALETTE);
+    }
+
+    @Benchmark
+    public LcdImageLine mapColorsWithMasks() {
+        BitVector msb = line.msb(), lsb = line.lsb();
+        BitVector newLsb = new BitVector(size, false);
+        BitVector newMsb = new BitVector(size, false);
+        for (int i = 0; i < 4; i++) {
+            BitVector l = Bits.test(i, 0) ? lsb : lsb.not();
+            BitVector m = Bits.test(i, 1) ? msb : msb.not();
+            BitVector mask = m.and(l);
+            newMsb = newMsb.or(mask
+                    .and(new BitVector(size, Bits.test(PALETTE, 2 * i + 1))));
+            newLsb = newLsb.or(
+                    mask.and(new BitVector(size, Bits.test(PALETTE, 2 * i))));
+        }
+        return new LcdImageLine(newMsb, newLsb, line.opacity());
+    }
+}
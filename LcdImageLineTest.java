@@ -0,0 +1,42 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LcdImageLineTest {
+
+    private static int color(LcdImageLine line, int x) {
+        return (line.msb().testBit(x) ? 2 : 0) + (line.lsb().testBit(x) ? 1 : 0);
+    }
+
+    @Test
+    void mapColorsTransformsEachPixelByThePalette() {
+        Random rng = new Random(5);
+        for (int palette = 0; palette < 256; palette++) {
+            LcdImageLine.Builder b = new LcdImageLine.Builder(LcdController.LCD_WIDTH);
+            MutableLcdImageLine mutable = new MutableLcdImageLine(LcdController.LCD_WIDTH);
+            for (int i = 0; i < LcdController.LCD_WIDTH / Byte.SIZE; i++) {
+                int msb = rng.nextInt(0x100), lsb = rng.nextInt(0x100);
+                b.setBytes(i, msb, lsb);
+                mutable.setBytes(i, msb, lsb);
+            }
+            LcdImageLine line = b.build();
+            LcdImageLine mapped = line.mapColors(palette);
+            LcdImageLine mappedInPlace = mutable.mapColors(palette).toLcdImageLine();
+
+            assertEquals(mapped, mappedInPlace);
+            assertEquals(line.opacity(), mapped.opacity());
+            for (int x = 0; x < LcdController.LCD_WIDTH; x++)
+                assertEquals((palette >>> (2 * color(line, x))) & 0b11,
+                        color(mapped, x));
+        }
+    }
+}
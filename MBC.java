@@ -0,0 +1,33 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.cartridge;
+
+import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.component.Stateful;
+
+/**
+ * represents a memory bank controller, giving access to the rom (and possibly
+ * the ram) of a cartridge.
+ */
+public interface MBC extends Component, Stateful {
+
+    /**
+     * return the offset, in the rom of the cartridge, of the byte currently
+     * mapped at the given address, or -1 if the address is not mapped to the
+     * rom. As the offset depends on the selected bank, two equal offsets
+     * always designate the same byte, whatever the mapping was when they were
+     * obtained.
+     * 
+     * @param address
+     *            the address (must be a 16 bits value)
+     * @throws IllegalArgumentException
+     *             if the address is not a 16 bits value
+     * @return the offset in the rom of the byte mapped at the given address,
+     *         or -1 if there is none
+     */
+    public abstract int romOffset(int address);
+
+}
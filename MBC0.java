@@ -8,10 +8,10 @@ package ch.epfl.gameboj.component.cartridge;
 import java.util.Objects;
 
 import ch.epfl.gameboj.Preconditions;
-import ch.epfl.gameboj.component.Component;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC0 implements Component {
+public final class MBC0 implements MBC {
 
     private final Rom rom;
 
@@ -46,6 +46,21 @@ public final class MBC0 implements Component {
         }
     }
 
+    /**
+     * copies the bytes of the mbc0 rom at once if they all belong to it.
+     */
+    @Override
+    public boolean read(int address, byte[] destination, int offset,
+            int length) {
+        Preconditions.checkBits16(address);
+        if (address + length <= MBC0_ROM_SIZE) {
+            rom.read(address, destination, offset, length);
+            return true;
+        } else {
+            return MBC.super.read(address, destination, offset, length);
+        }
+    }
+
     /**
      * Give access to the mbc0 rom.
      */
@@ -54,4 +69,32 @@ public final class MBC0 implements Component {
         // Does nothing, not possible to write in a ROM.
     }
 
+    /**
+     * return the given address if it belongs to the rom, -1 otherwise.
+     */
+    @Override
+    public int romOffset(int address) {
+        Preconditions.checkBits16(address);
+        return address < MBC0_ROM_SIZE ? address : -1;
+    }
+
+    /**
+     * writes nothing, as the mbc0 has no state.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+    }
+
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+    }
+
+    /**
+     * return the address range of the mbc0 rom.
+     */
+    @Override
+    public int[] addressRanges() {
+        return new int[] { 0, MBC0_ROM_SIZE };
+    }
+
 }
\ No newline at end of file
@@ -3,15 +3,18 @@ package ch.epfl.gameboj.component.cartridge;
 import static ch.epfl.gameboj.Preconditions.checkBits16;
 import static ch.epfl.gameboj.Preconditions.checkBits8;
 
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.bits.Bits;
-import ch.epfl.gameboj.component.Component;
 import ch.epfl.gameboj.component.memory.Ram;
 import ch.epfl.gameboj.component.memory.Rom;
 
-public final class MBC1 implements Component {
+public final class MBC1 implements MBC {
     private static final int RAM_ENABLE = 0xA;
+    private static final int ROM_END = 0x8000;
+    private static final int RAM_START = 0xA000, RAM_END = 0xC000;
 
     private enum Mode { MODE_0, MODE_1 };
+    private static final Mode[] MODES = Mode.values();
 
     private final Rom rom;
     private final Ram ram;
@@ -47,6 +50,18 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public boolean read(int address, byte[] destination, int offset,
+            int length) {
+        int bank = Bits.extract(checkBits16(address), 14, 2);
+        int last = address + length - 1;
+        if (length > 0 && bank < 2 && Bits.extract(last, 14, 2) == bank) {
+            rom.read(romOffset(address), destination, offset, length);
+            return true;
+        }
+        return MBC.super.read(address, destination, offset, length);
+    }
+
     @Override
     public void write(int address, int data) {
         checkBits8(data);
@@ -70,6 +85,41 @@ public final class MBC1 implements Component {
         }
     }
 
+    @Override
+    public int romOffset(int address) {
+        switch (Bits.extract(checkBits16(address), 13, 3)) {
+        case 0: case 1:
+            return romAddress(msb2(), 0, address);
+        case 2: case 3:
+            return romAddress(ramRom2, romLsb5, address);
+        default:
+            return -1;
+        }
+    }
+
+    @Override
+    public int[] addressRanges() {
+        return new int[] { 0, ROM_END, RAM_START, RAM_END };
+    }
+
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        writer.writeBoolean(ramEnabled);
+        writer.writeByte(mode.ordinal());
+        writer.writeByte(romLsb5);
+        writer.writeByte(ramRom2);
+        writer.writeRam(ram);
+    }
+
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        ramEnabled = reader.readBoolean();
+        mode = MODES[reader.readByte()];
+        romLsb5 = reader.readByte();
+        ramRom2 = reader.readByte();
+        reader.readRam(ram);
+    }
+
     private int msb2() {
         switch (mode) {
         case MODE_0: return 0;
@@ -6,6 +6,7 @@
 package ch.epfl.gameboj.gui;
 
 import java.io.File;
+import java.nio.IntBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -18,8 +19,9 @@ import javafx.application.Application;
 import javafx.event.EventHandler;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.Scene;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.KeyCode;
 import javafx.stage.Stage;
@@ -31,11 +33,21 @@ public final class Main extends Application {
 
     private final static int ENLARGEMENT_FACTOR = 2;
 
+    private final static KeyCode REWIND_KEY = KeyCode.BACK_SPACE;
+    private final static KeyCode TURBO_KEY = KeyCode.SPACE;
+
+    private static Map<KeyCode, Double> speeds = Map.of(KeyCode.DIGIT1, 1.0,
+            KeyCode.DIGIT2, 2.0, KeyCode.DIGIT3, 4.0, KeyCode.DIGIT4, 8.0);
+
     private static Map<KeyCode, Key> keys = Map.of(KeyCode.D, Key.RIGHT,
             KeyCode.A, Key.LEFT, KeyCode.W, Key.UP, KeyCode.S, Key.DOWN,
             KeyCode.O, Key.A, KeyCode.K, Key.B, KeyCode.B, Key.SELECT,
             KeyCode.N, Key.START);
 
+    private Emulator emulator;
+    private double speed = 1;
+    private boolean turbo = false;
+
     /**
      * calls the method launch of Application with the given argument.
      * 
@@ -51,8 +63,11 @@ public final class Main extends Application {
      * a ROM file) and finish the execution otherwise.
      * Creates a Game Boy whose cartridge is obtained from the ROM file passed in argument.
      * Creates the graphical interface and then displays it on the screen.
-     * Simulates the Game Boy by periodically updating the image displayed on 
-     * the screen and reacting to the key presses corresponding to those of the Game Boy.
+     * Simulates the Game Boy on its own thread, the JavaFX application thread
+     * only displaying the images it draws and passing it the key presses
+     * corresponding to those of the Game Boy. The simulation runs as fast as
+     * possible while the turbo key is held, and the digit keys choose its
+     * speed otherwise.
      */
     @Override
     public void start(Stage stage) throws Exception {
@@ -64,24 +79,41 @@ public final class Main extends Application {
 
         File romFile = new File(argList.get(0));
         GameBoy gb = new GameBoy(Cartridge.ofFile(romFile));
+        emulator = new Emulator(gb);
 
-        ImageView imageView = new ImageView();
+        PixelBuffer<IntBuffer> pixels = ImageConverter.newPixelBuffer(
+                LcdController.LCD_WIDTH, LcdController.LCD_HEIGHT);
+        ImageView imageView = new ImageView(new WritableImage(pixels));
         imageView.setFitWidth(LcdController.LCD_WIDTH * ENLARGEMENT_FACTOR);
         imageView.setFitHeight(LcdController.LCD_HEIGHT * ENLARGEMENT_FACTOR);
 
         imageView.setOnKeyPressed(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
-                if (keys.get(event.getCode()) != null)
-                    gb.joypad().keyPressed(keys.get(event.getCode()));
+                if (event.getCode() == REWIND_KEY)
+                    emulator.setRewinding(true);
+                else if (event.getCode() == TURBO_KEY) {
+                    turbo = true;
+                    emulator.setSpeed(Double.POSITIVE_INFINITY);
+                } else if (speeds.get(event.getCode()) != null) {
+                    speed = speeds.get(event.getCode());
+                    if (!turbo)
+                        emulator.setSpeed(speed);
+                } else if (keys.get(event.getCode()) != null)
+                    emulator.keyPressed(keys.get(event.getCode()));
             }
         });
 
         imageView.setOnKeyReleased(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
-                if (keys.get(event.getCode()) != null)
-                    gb.joypad().keyReleased(keys.get(event.getCode()));
+                if (event.getCode() == REWIND_KEY)
+                    emulator.setRewinding(false);
+                else if (event.getCode() == TURBO_KEY) {
+                    turbo = false;
+                    emulator.setSpeed(speed);
+                } else if (keys.get(event.getCode()) != null)
+                    emulator.keyReleased(keys.get(event.getCode()));
             }
         });
 
@@ -91,18 +123,25 @@ public final class Main extends Application {
         stage.show();
         imageView.requestFocus();
 
-        long start = System.nanoTime();
         AnimationTimer timer = new AnimationTimer() {
             @Override
             public void handle(long now) {
-                gb.runUntil(
-                        (long) ((now - start) * GameBoy.CYCLES_PER_NANOSECOND));
-                Image image = ImageConverter
-                        .convert(gb.lcdController().currentImage());
-                imageView.setImage(image);
+                int[] frame = emulator.newFrame();
+                if (frame != null)
+                    ImageConverter.display(frame, pixels);
             }
         };
+        emulator.start();
         timer.start();
     }
 
+    /**
+     * stops the simulation thread when the application ends.
+     */
+    @Override
+    public void stop() throws Exception {
+        if (emulator != null)
+            emulator.stop();
+    }
+
 }
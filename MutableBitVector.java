@@ -0,0 +1,424 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.bits;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * represents a bit vector whose size is a strictly positive multiple of 32,
+ * and whose operations modify it in place instead of allocating a new
+ * vector. It is meant to be reused as a scratch vector, for instance for each
+ * line drawn, and converted into a BitVector only once its final value is
+ * computed.
+ */
+public final class MutableBitVector {
+
+    private static final int nbOfBytesInInt = Integer.SIZE / Byte.SIZE;
+    private static final int BYTE_MASK = 0b1111_1111;
+
+    private final int[] vector;
+
+    /**
+     * builds a bit vector of the given size and of which all bits have the
+     * value 0.
+     *
+     * @param sizeInBits
+     *            the size in bits (must be a strictly positive multiple of 32)
+     * @throws IllegalArgumentException
+     *             if sizeInBits is invalid
+     */
+    public MutableBitVector(int sizeInBits) {
+        checkArgument(sizeInBits > 0 && (sizeInBits % Integer.SIZE == 0));
+        vector = new int[sizeInBits / Integer.SIZE];
+    }
+
+    /**
+     * @return the size of the vector in bits.
+     */
+    public int size() {
+        return Integer.SIZE * vector.length;
+    }
+
+    /**
+     * determines if the bit of given index is true or false.
+     *
+     * @param index
+     *            the index (must be positive and strictly inferior to the size
+     *            of the vector)
+     * @throws IndexOutOfBoundsException
+     *             if the index is invalid
+     * @return true if the bit of given index is 1 and false otherwise
+     */
+    public boolean testBit(int index) {
+        Objects.checkIndex(index, size());
+        return Bits.test(vector[index / Integer.SIZE], index % Integer.SIZE);
+    }
+
+    /**
+     * sets all the bits of this vector to the given value.
+     *
+     * @param value
+     *            the value
+     * @return this vector
+     */
+    public MutableBitVector fill(boolean value) {
+        Arrays.fill(vector, value ? ~0 : 0);
+        return this;
+    }
+
+    /**
+     * sets the value of a byte designated by its index.
+     *
+     * @param index
+     *            the index (must be positive and strictly inferior to the
+     *            number of bytes of the vector)
+     * @param newValue
+     *            the new value (must be an 8 bits value)
+     * @throws IllegalArgumentException
+     *             if newValue is invalid
+     * @throws IndexOutOfBoundsException
+     *             if the index is invalid
+     * @return this vector
+     */
+    public MutableBitVector setByte(int index, int newValue) {
+        Preconditions.checkBits8(newValue);
+        Objects.checkIndex(index, nbOfBytesInInt * vector.length);
+        int shift = Byte.SIZE * (index % nbOfBytesInInt);
+        int i = index / nbOfBytesInInt;
+        vector[i] = (vector[i] & ~(BYTE_MASK << shift)) | newValue << shift;
+        return this;
+    }
+
+    /**
+     * copies the bits of the given vector of the same size into this vector.
+     *
+     * @param that
+     *            the other vector (must have the same size as this vector)
+     * @throws IllegalArgumentException
+     *             if the other vector is invalid
+     * @return this vector
+     */
+    public MutableBitVector set(MutableBitVector that) {
+        checkArgument(that.vector.length == vector.length);
+        System.arraycopy(that.vector, 0, vector, 0, vector.length);
+        return this;
+    }
+
+    /**
+     * replaces this vector by its complement.
+     *
+     * @return this vector
+     */
+    public MutableBitVector not() {
+        for (int i = 0; i < vector.length; i++)
+            vector[i] = ~vector[i];
+        return this;
+    }
+
+    /**
+     * replaces this vector by its bitwise conjunction with another vector of
+     * the same size.
+     *
+     * @param that
+     *            the other vector (must have the same size as this vector)
+     * @throws IllegalArgumentException
+     *             if the other vector is invalid
+     * @return this vector
+     */
+    public MutableBitVector and(MutableBitVector that) {
+        int[] vector2 = that.vector;
+        checkArgument(vector2.length == vector.length);
+        for (int i = 0; i < vector.length; i++)
+            vector[i] &= vector2[i];
+        return this;
+    }
+
+    /**
+     * replaces this vector by its bitwise conjunction with the complement of
+     * another vector of the same size.
+     *
+     * @param that
+     *            the other vector (must have the same size as this vector)
+     * @throws IllegalArgumentException
+     *             if the other vector is invalid
+     * @return this vector
+     */
+    public MutableBitVector andNot(MutableBitVector that) {
+        int[] vector2 = that.vector;
+        checkArgument(vector2.length == vector.length);
+        for (int i = 0; i < vector.length; i++)
+            vector[i] &= ~vector2[i];
+        return this;
+    }
+
+    /**
+     * replaces this vector by its bitwise disjunction with another vector of
+     * the same size.
+     *
+     * @param that
+     *            the other vector (must have the same size as this vector)
+     * @throws IllegalArgumentException
+     *             if the other vector is invalid
+     * @return this vector
+     */
+    public MutableBitVector or(MutableBitVector that) {
+        int[] vector2 = that.vector;
+        checkArgument(vector2.length == vector.length);
+        for (int i = 0; i < vector.length; i++)
+            vector[i] |= vector2[i];
+        return this;
+    }
+
+    /**
+     * replaces the bits of this vector by those of another vector of the same
+     * size where the given mask is 1, the others being kept.
+     *
+     * @param that
+     *            the other vector (must have the same size as this vector)
+     * @param mask
+     *            the mask (must have the same size as this vector)
+     * @throws IllegalArgumentException
+     *             if the other vector or the mask is invalid
+     * @return this vector
+     */
+    public MutableBitVector select(MutableBitVector that,
+            MutableBitVector mask) {
+        int[] vector2 = that.vector;
+        int[] m = mask.vector;
+        checkArgument(vector2.length == vector.length
+                && m.length == vector.length);
+        for (int i = 0; i < vector.length; i++)
+            vector[i] = (vector2[i] & m[i]) | (vector[i] & ~m[i]);
+        return this;
+    }
+
+    /**
+     * replaces this vector by the result of a boolean function of two
+     * vectors of its size, given by its truth table: the bit of index i is
+     * the bit of index 2h + l of the table, h and l being the bits of index i
+     * of the two vectors. Both vectors can be this vector.
+     *
+     * @param high
+     *            the first vector (must have the same size as this vector)
+     * @param low
+     *            the second vector (must have the same size as this vector)
+     * @param truthTable
+     *            the truth table (must be a 4 bits value)
+     * @throws IllegalArgumentException
+     *             if one of the vectors or the truth table is invalid
+     * @return this vector
+     */
+    public MutableBitVector combine(MutableBitVector high, MutableBitVector low,
+            int truthTable) {
+        checkArgument(high.vector.length == vector.length
+                && low.vector.length == vector.length);
+        combine(high.vector, low.vector, truthTable, vector);
+        return this;
+    }
+
+    /**
+     * shifts this vector by the given distance, using the usual convention
+     * that a positive distance represents a shift to the left and a negative
+     * distance a shift to the right.
+     *
+     * @param distance
+     *            the distance
+     * @return this vector
+     */
+    public MutableBitVector shift(int distance) {
+        extractZeroExtended(vector, vector, -distance);
+        return this;
+    }
+
+    /**
+     * replaces this vector by the vector of its size extracted from the
+     * extension by 0 of the given vector, from the given bit.
+     *
+     * @param source
+     *            the vector to extract from
+     * @param start
+     *            the start bit
+     * @return this vector
+     */
+    public MutableBitVector extractZeroExtended(MutableBitVector source,
+            int start) {
+        extractZeroExtended(source.vector, vector, start);
+        return this;
+    }
+
+    /**
+     * replaces this vector by the vector of its size extracted from the
+     * extension by wrapping of the given vector, from the given bit.
+     *
+     * @param source
+     *            the vector to extract from (must not be this vector)
+     * @param start
+     *            the start bit
+     * @throws IllegalArgumentException
+     *             if the source is this vector
+     * @return this vector
+     */
+    public MutableBitVector extractWrapped(MutableBitVector source,
+            int start) {
+        checkArgument(source != this);
+        extractWrapped(source.vector, vector, start);
+        return this;
+    }
+
+    /**
+     * return an immutable copy of this vector.
+     *
+     * @return a bit vector having the bits of this vector
+     */
+    public BitVector toBitVector() {
+        return new BitVector(vector.clone());
+    }
+
+    /**
+     * returns a representation of the vector as a string consisting only of
+     * characters 0 and 1.
+     *
+     * @return a representation of the vector as a string consisting only of
+     *         characters 0 and 1
+     */
+    @Override
+    public String toString() {
+        return toBitVector().toString();
+    }
+
+    /**
+     * writes into the given destination the words extracted from the
+     * extension by 0 of the given source, from the given bit. The source and
+     * the destination can be the same array.
+     */
+    static void extractZeroExtended(int[] source, int[] destination,
+            int start) {
+        int shift = start & (Integer.SIZE - 1);
+        int first = start >> 5;
+        int length = destination.length;
+
+        if (shift == 0) {
+            // the words of the source are copied as a whole
+            int from = Math.max(0, first);
+            int to = Math.min(source.length, first + length);
+            if (from < to)
+                System.arraycopy(source, from, destination, from - first,
+                        to - from);
+            Arrays.fill(destination, 0, Math.min(length, from - first), 0);
+            Arrays.fill(destination, Math.max(0, to - first), length, 0);
+        } else if (first < 0) {
+            // words are read before being written when going backwards
+            for (int i = length - 1; i >= 0; i--)
+                destination[i] = word(source, first + i) >>> shift
+                        | word(source, first + i + 1) << -shift;
+        } else {
+            for (int i = 0; i < length; i++)
+                destination[i] = word(source, first + i) >>> shift
+                        | word(source, first + i + 1) << -shift;
+        }
+    }
+
+    /**
+     * writes into the given destination, which must not be the source, the
+     * words extracted from the extension by wrapping of the given source,
+     * from the given bit.
+     */
+    static void extractWrapped(int[] source, int[] destination, int start) {
+        int shift = start & (Integer.SIZE - 1);
+        int n = source.length;
+        // power of two sizes, like the one of the background, need no division
+        int index = (n & (n - 1)) == 0 ? (start >> 5) & (n - 1)
+                : Math.floorMod(start >> 5, n);
+
+        if (shift == 0) {
+            for (int i = 0; i < destination.length; i++) {
+                destination[i] = source[index];
+                index = index + 1 == n ? 0 : index + 1;
+            }
+        } else {
+            int current = source[index];
+            for (int i = 0; i < destination.length; i++) {
+                index = index + 1 == n ? 0 : index + 1;
+                int next = source[index];
+                destination[i] = current >>> shift | next << -shift;
+                current = next;
+            }
+        }
+    }
+
+    /**
+     * represents a way of writing into the given destination, which can be
+     * one of the sources, the words of the boolean function of given truth
+     * table of the given words.
+     */
+    interface CombineKernel {
+        void combine(int[] high, int[] low, int truthTable, int[] destination);
+    }
+
+    /**
+     * the scalar combination, the one computed with the incubating vector
+     * module, or null if this module or VectorCombine is absent, and the
+     * one used, the latter if present
+     */
+    static final CombineKernel SCALAR_KERNEL = (high, low, truthTable,
+            destination) -> combineWords(high, low, truthTable, destination, 0);
+    static final CombineKernel VECTOR_KERNEL = vectorKernel();
+    private static final CombineKernel KERNEL = VECTOR_KERNEL != null
+            ? VECTOR_KERNEL
+            : SCALAR_KERNEL;
+
+    private static CombineKernel vectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+        try {
+            return (CombineKernel) Class
+                    .forName("ch.epfl.gameboj.bits.VectorCombine")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * writes into the given destination, which can be one of the sources, the
+     * words of the boolean function of given truth table of the given words.
+     */
+    static void combine(int[] high, int[] low, int truthTable,
+            int[] destination) {
+        checkArgument((truthTable & ~0b1111) == 0);
+        KERNEL.combine(high, low, truthTable, destination);
+    }
+
+    /**
+     * writes into the given destination the words of the boolean function of
+     * given truth table of the given words, from the given index. The
+     * function is applied to the 32 bits of a word at once, as the choice
+     * between two constants according to the low word, followed by the
+     * choice between two such words according to the high word.
+     */
+    static void combineWords(int[] high, int[] low, int truthTable,
+            int[] destination, int from) {
+        int f0 = -(truthTable & 1);
+        int f1 = -((truthTable >>> 1) & 1);
+        int f2 = -((truthTable >>> 2) & 1);
+        int f3 = -((truthTable >>> 3) & 1);
+        for (int i = from; i < destination.length; i++) {
+            int l = low[i];
+            int ifHigh0 = f0 ^ (l & (f0 ^ f1));
+            int ifHigh1 = f2 ^ (l & (f2 ^ f3));
+            destination[i] = ifHigh0 ^ (high[i] & (ifHigh0 ^ ifHigh1));
+        }
+    }
+
+    private static int word(int[] source, int index) {
+        return index >= 0 && index < source.length ? source[index] : 0;
+    }
+}
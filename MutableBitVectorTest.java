@@ -0,0 +1,147 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.bits;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MutableBitVectorTest {
+
+    private static final int[] SIZES = { 32, 160, 256 };
+
+    private static MutableBitVector randomVector(Random rng, int size) {
+        MutableBitVector v = new MutableBitVector(size);
+        for (int i = 0; i < size / Byte.SIZE; i++)
+            v.setByte(i, rng.nextInt(0x100));
+        return v;
+    }
+
+    private static MutableBitVector copy(MutableBitVector v) {
+        return new MutableBitVector(v.size()).set(v);
+    }
+
+    @Test
+    void logicalOperationsWorkLikeBitVector() {
+        Random rng = new Random(1);
+        for (int size : SIZES) {
+            for (int k = 0; k < 100; k++) {
+                MutableBitVector a = randomVector(rng, size);
+                MutableBitVector b = randomVector(rng, size);
+                MutableBitVector m = randomVector(rng, size);
+                BitVector ia = a.toBitVector(), ib = b.toBitVector(),
+                        im = m.toBitVector();
+
+                assertEquals(ia.not(), copy(a).not().toBitVector());
+                assertEquals(ia.and(ib), copy(a).and(b).toBitVector());
+                assertEquals(ia.or(ib), copy(a).or(b).toBitVector());
+                assertEquals(ia.and(ib.not()), copy(a).andNot(b).toBitVector());
+                assertEquals(ib.and(im).or(ia.and(im.not())),
+                        copy(a).select(b, m).toBitVector());
+            }
+        }
+    }
+
+    @Test
+    void extractionsAndShiftsWorkLikeBitVector() {
+        Random rng = new Random(2);
+        for (int size : SIZES) {
+            for (int start = -2 * size - 33; start <= 2 * size + 33; start++) {
+                MutableBitVector a = randomVector(rng, size);
+                BitVector ia = a.toBitVector();
+
+                assertEquals(ia.shift(start), copy(a).shift(start).toBitVector());
+                for (int to : SIZES) {
+                    assertEquals(ia.extractWrapped(to, start),
+                            new MutableBitVector(to).extractWrapped(a, start)
+                                    .toBitVector());
+                    assertEquals(ia.extractZeroExtended(to, start),
+                            new MutableBitVector(to)
+                                    .extractZeroExtended(a, start)
+                                    .toBitVector());
+                }
+            }
+        }
+    }
+
+    @Test
+    void extractionsMatchBitByBitDefinition() {
+        Random rng = new Random(3);
+        for (int size : SIZES) {
+            MutableBitVector a = randomVector(rng, size);
+            for (int start = -size - 40; start <= size + 40; start += 7) {
+                MutableBitVector wrapped = new MutableBitVector(160)
+                        .extractWrapped(a, start);
+                MutableBitVector zero = new MutableBitVector(160)
+                        .extractZeroExtended(a, start);
+                for (int i = 0; i < 160; i++) {
+                    int j = start + i;
+                    assertEquals(a.testBit(Math.floorMod(j, size)),
+                            wrapped.testBit(i));
+                    assertEquals(j >= 0 && j < size && a.testBit(j),
+                            zero.testBit(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void combineAppliesTruthTableToEachBit() {
+        Random rng = new Random(4);
+        for (int size : SIZES) {
+            MutableBitVector high = randomVector(rng, size);
+            MutableBitVector low = randomVector(rng, size);
+            for (int table = 0; table < 16; table++) {
+                MutableBitVector c = new MutableBitVector(size)
+                        .combine(high, low, table);
+                BitVector ic = BitVector.combine(high.toBitVector(),
+                        low.toBitVector(), table);
+                assertEquals(ic, c.toBitVector());
+                for (int i = 0; i < size; i++) {
+                    int index = (high.testBit(i) ? 2 : 0)
+                            + (low.testBit(i) ? 1 : 0);
+                    assertEquals(Bits.test(table, index), c.testBit(i));
+                }
+            }
+        }
+    }
+
+    // only meaningful when run with --add-modules jdk.incubator.vector
+    @Test
+    void vectorCombinationWorksLikeScalarOne() {
+        if (MutableBitVector.VECTOR_KERNEL == null)
+            return;
+        Random rng = new Random(5);
+        for (int length = 1; length <= 40; length++) {
+            int[] high = rng.ints(length).toArray();
+            int[] low = rng.ints(length).toArray();
+            for (int table = 0; table < 16; table++) {
+                int[] scalar = new int[length], vector = new int[length];
+                MutableBitVector.SCALAR_KERNEL.combine(high, low, table,
+                        scalar);
+                MutableBitVector.VECTOR_KERNEL.combine(high, low, table,
+                        vector);
+                assertArrayEquals(scalar, vector);
+            }
+        }
+    }
+
+    @Test
+    void operationsFailOnVectorsOfDifferentSizes() {
+        MutableBitVector a = new MutableBitVector(160);
+        MutableBitVector b = new MutableBitVector(256);
+        assertThrows(IllegalArgumentException.class, () -> a.and(b));
+        assertThrows(IllegalArgumentException.class, () -> a.set(b));
+        assertThrows(IllegalArgumentException.class,
+                () -> a.extractWrapped(a, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> a.combine(a, a, 16));
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import static ch.epfl.gameboj.Preconditions.checkArgument;
+
+import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.bits.MutableBitVector;
+
+/**
+ * represents a line of an image whose operations, the same as those of
+ * LcdImageLine, modify it in place. It is used as a scratch line while a line
+ * is computed, so that only its final value is allocated.
+ */
+final class MutableLcdImageLine {
+
+    private static final int STANDARD_PALETTE = 0b11100100;
+
+    private MutableBitVector msb;
+    private MutableBitVector lsb;
+    private final MutableBitVector opacity;
+
+    // vectors used by the operations, the two first being swapped with msb
+    // and lsb when the colors are mapped
+    private MutableBitVector newMsb;
+    private MutableBitVector newLsb;
+    private final MutableBitVector scratch;
+
+    /**
+     * builds a line of the given size whose pixels are all transparent and of
+     * color 0.
+     *
+     * @param size
+     *            the size (must be a strictly positive multiple of 32)
+     * @throws IllegalArgumentException
+     *             if the size is invalid
+     */
+    MutableLcdImageLine(int size) {
+        msb = new MutableBitVector(size);
+        lsb = new MutableBitVector(size);
+        opacity = new MutableBitVector(size);
+        newMsb = new MutableBitVector(size);
+        newLsb = new MutableBitVector(size);
+        scratch = new MutableBitVector(size);
+    }
+
+    /**
+     * return the length of the line in pixels.
+     */
+    int size() {
+        return msb.size();
+    }
+
+    /**
+     * return the opacity of the line, which must not be modified.
+     */
+    MutableBitVector opacity() {
+        return opacity;
+    }
+
+    /**
+     * makes all the pixels of the line transparent and of color 0.
+     *
+     * @return this line
+     */
+    MutableLcdImageLine clear() {
+        msb.fill(false);
+        lsb.fill(false);
+        opacity.fill(false);
+        return this;
+    }
+
+    /**
+     * sets the high and low bytes of the line at a given index, the pixels of
+     * color 0 being transparent and the others opaque.
+     *
+     * @return this line
+     */
+    MutableLcdImageLine setBytes(int index, int msbByte, int lsbByte) {
+        msb.setByte(index, msbByte);
+        lsb.setByte(index, lsbByte);
+        opacity.setByte(index, msbByte | lsbByte);
+        return this;
+    }
+
+    /**
+     * shifts the line by the given number of pixels, preserving its length.
+     *
+     * @return this line
+     */
+    MutableLcdImageLine shift(int distance) {
+        msb.shift(distance);
+        lsb.shift(distance);
+        opacity.shift(distance);
+        return this;
+    }
+
+    /**
+     * replaces this line by the line of its size extracted from the infinite
+     * extension by wrapping of the given line, from a given pixel.
+     *
+     * @throws IllegalArgumentException
+     *             if the given line is this line
+     * @return this line
+     */
+    MutableLcdImageLine extractWrapped(MutableLcdImageLine that, int start) {
+        msb.extractWrapped(that.msb, start);
+        lsb.extractWrapped(that.lsb, start);
+        opacity.extractWrapped(that.opacity, start);
+        return this;
+    }
+
+    /**
+     * transforms the colors of the line according to the palette, given in the
+     * form of an encoded byte.
+     *
+     * @throws IllegalArgumentException
+     *             if the palette is invalid
+     * @return this line
+     */
+    MutableLcdImageLine mapColors(int palette) {
+        Preconditions.checkBits8(palette);
+        if (palette == STANDARD_PALETTE)
+            return this;
+
+        newMsb.combine(msb, lsb, LcdImageLine.truthTable(palette, 1));
+        newLsb.combine(msb, lsb, LcdImageLine.truthTable(palette, 0));
+        MutableBitVector m = msb, l = lsb;
+        msb = newMsb;
+        lsb = newLsb;
+        newMsb = m;
+        newLsb = l;
+        return this;
+    }
+
+    /**
+     * composes this line with another of the same length, placed above it,
+     * using the given opacity vector to perform the composition, the one of
+     * the upper line being ignored.
+     *
+     * @throws IllegalArgumentException
+     *             if the other line or the opacity is invalid
+     * @return this line
+     */
+    MutableLcdImageLine below(MutableLcdImageLine that,
+            MutableBitVector opacity) {
+        checkArgument(opacity.size() == size());
+        msb.select(that.msb, opacity);
+        lsb.select(that.lsb, opacity);
+        this.opacity.or(opacity);
+        return this;
+    }
+
+    /**
+     * composes this line with another of the same length, placed above it,
+     * using the opacity of the upper line to make the composition.
+     *
+     * @throws IllegalArgumentException
+     *             if the other line is invalid
+     * @return this line
+     */
+    MutableLcdImageLine below(MutableLcdImageLine that) {
+        return below(that, that.opacity);
+    }
+
+    /**
+     * composes this line with another of the same length, placed below it,
+     * using the opacity of this line to make the composition.
+     *
+     * @throws IllegalArgumentException
+     *             if the other line is invalid
+     * @return this line
+     */
+    MutableLcdImageLine above(MutableLcdImageLine that) {
+        MutableBitVector transparent = scratch.set(opacity).not();
+        msb.select(that.msb, transparent);
+        lsb.select(that.lsb, transparent);
+        opacity.or(that.opacity);
+        return this;
+    }
+
+    /**
+     * joins this line with another of the same length, from a pixel of given
+     * index.
+     *
+     * @throws IllegalArgumentException
+     *             if the other line or the index is invalid
+     * @return this line
+     */
+    MutableLcdImageLine join(MutableLcdImageLine that, int index) {
+        checkArgument(index >= 0 && index <= size());
+        MutableBitVector maskLeft = scratch.fill(true).shift(index);
+        msb.select(that.msb, maskLeft);
+        lsb.select(that.lsb, maskLeft);
+        opacity.select(that.opacity, maskLeft);
+        return this;
+    }
+
+    /**
+     * return an immutable copy of this line.
+     */
+    LcdImageLine toLcdImageLine() {
+        return new LcdImageLine(msb.toBitVector(), lsb.toBitVector(),
+                opacity.toBitVector());
+    }
+}
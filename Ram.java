@@ -5,15 +5,95 @@
 
 package ch.epfl.gameboj.component.memory;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 import ch.epfl.gameboj.Preconditions;
 
+/**
+ * represents a random-access memory. Its content is stored in pages which can
+ * be shared with the copies of its content: a shared page is copied the first
+ * time it is written, so that a copy only costs the pages modified since.
+ */
 public final class Ram {
 
-    private final byte[] ram;
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int size;
+    private final byte[][] pages;
+    private final boolean[] shared;
+
+    /**
+     * represents a copy of the content of a random-access memory, which
+     * remains unchanged whatever the writings done in the memory afterwards.
+     */
+    public static final class Pages {
+        private final byte[][] pages;
+        private final int size;
+
+        private Pages(byte[][] pages, int size) {
+            this.pages = pages;
+            this.size = size;
+        }
+
+        /**
+         * return the size of the copied memory in bytes.
+         *
+         * @return the size of the copied memory in bytes
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * copies the bytes of the copied memory into the given array, from
+         * the given offset.
+         *
+         * @param destination
+         *            the array
+         * @param offset
+         *            the offset of the first byte in the array
+         * @throws IndexOutOfBoundsException
+         *             if the array is too small
+         */
+        public void copyTo(byte[] destination, int offset) {
+            Objects.checkFromIndexSize(offset, size, destination.length);
+            for (byte[] page : pages) {
+                System.arraycopy(page, 0, destination, offset, page.length);
+                offset += page.length;
+            }
+        }
+
+        /**
+         * return a copy of a memory whose bytes are those of the given array,
+         * from the given offset.
+         *
+         * @param source
+         *            the array
+         * @param offset
+         *            the offset of the first byte in the array
+         * @param size
+         *            the size of the memory (must be positive)
+         * @throws IndexOutOfBoundsException
+         *             if the array is too small
+         * @return a copy of a memory containing the given bytes
+         */
+        public static Pages of(byte[] source, int offset, int size) {
+            Objects.checkFromIndexSize(offset, size, source.length);
+            Ram ram = new Ram(size);
+            for (byte[] page : ram.pages) {
+                System.arraycopy(source, offset, page, 0, page.length);
+                offset += page.length;
+            }
+            return ram.copy();
+        }
+    }
 
     /**
      * builds a new random-access memory of given size.
-     * 
+     *
      * @param size
      *            the size of the RAM (must be positive)
      * @throws IllegalArgumentException
@@ -21,21 +101,26 @@ public final class Ram {
      */
     public Ram(int size) {
         Preconditions.checkArgument(size >= 0);
-        ram = new byte[size];
+        this.size = size;
+        int pageCount = (size + PAGE_MASK) >>> PAGE_BITS;
+        pages = new byte[pageCount][];
+        for (int i = 0; i < pageCount; i++)
+            pages[i] = new byte[Math.min(PAGE_SIZE, size - i * PAGE_SIZE)];
+        shared = new boolean[pageCount];
     }
 
     /**
      * return the size of the memory in bytes.
-     * 
+     *
      * @return the size of the memory in bytes
      */
     public int size() {
-        return ram.length;
+        return size;
     }
 
     /**
      * return the byte located at the index given.
-     * 
+     *
      * @param index
      *            the index (must be included between 0 and FF)
      * @throws IndexOutOfBoundsException
@@ -43,15 +128,45 @@ public final class Ram {
      * @return the byte located at the index given
      */
     public int read(int index) {
-        if (index < 0 || index >= ram.length) {
+        if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
-        return Byte.toUnsignedInt(ram[index]);
+        return Byte.toUnsignedInt(pages[index >>> PAGE_BITS][index & PAGE_MASK]);
+    }
+
+    /**
+     * copies the given number of bytes of the memory, from the given index,
+     * into the given array, from the given offset.
+     *
+     * @param index
+     *            the index of the first byte
+     * @param destination
+     *            the array
+     * @param offset
+     *            the offset of the first byte in the array
+     * @param length
+     *            the number of bytes to copy
+     * @throws IndexOutOfBoundsException
+     *             if the bytes are not all in the memory or if the array is
+     *             too small
+     */
+    public void read(int index, byte[] destination, int offset, int length) {
+        Objects.checkFromIndexSize(index, length, size);
+        Objects.checkFromIndexSize(offset, length, destination.length);
+        while (length > 0) {
+            int inPage = index & PAGE_MASK;
+            int count = Math.min(length, PAGE_SIZE - inPage);
+            System.arraycopy(pages[index >>> PAGE_BITS], inPage, destination,
+                    offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
     }
 
     /**
      * modifies the content of the memory at the given index for the given value.
-     * 
+     *
      * @param index
      *            the index (must be included between 0 and FF)
      * @param value
@@ -62,10 +177,43 @@ public final class Ram {
      *             if the value is invalid
      */
     public void write(int index, int value) {
-        if (index < 0 || index >= ram.length) {
+        if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
-        ram[index] = (byte) Preconditions.checkBits8(value);
+        Preconditions.checkBits8(value);
+        int page = index >>> PAGE_BITS;
+        if (shared[page]) {
+            pages[page] = pages[page].clone();
+            shared[page] = false;
+        }
+        pages[page][index & PAGE_MASK] = (byte) value;
+    }
+
+    /**
+     * return a copy of the current content of the memory. No byte is copied:
+     * the pages of the memory are shared with the copy until they are written.
+     *
+     * @return a copy of the content of the memory
+     */
+    public Pages copy() {
+        Arrays.fill(shared, true);
+        return new Pages(pages.clone(), size);
+    }
+
+    /**
+     * replaces the content of the memory by the given copy, without copying
+     * any byte: the pages of the copy are shared with the memory until they
+     * are written.
+     *
+     * @param copy
+     *            a copy of a memory of the same size
+     * @throws IllegalArgumentException
+     *             if the copy does not have the size of the memory
+     */
+    public void restore(Pages copy) {
+        Preconditions.checkArgument(copy.size == size);
+        System.arraycopy(copy.pages, 0, pages, 0, pages.length);
+        Arrays.fill(shared, true);
     }
 
-}
\ No newline at end of file
+}
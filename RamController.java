@@ -75,6 +75,22 @@ public final class RamController implements Component {
         }
     }
 
+    /**
+     * copies the bytes of the ram at the given addresses at once if they all
+     * belong to the controlled range, and reads them one by one otherwise.
+     */
+    @Override
+    public boolean read(int address, byte[] destination, int offset,
+            int length) {
+        Preconditions.checkBits16(address);
+        if (address >= start && address + length <= end) {
+            ctrldRam.read(address - start, destination, offset, length);
+            return true;
+        } else {
+            return Component.super.read(address, destination, offset, length);
+        }
+    }
+
     /**
      * stores the value given at the given address in the component or does
      * nothing if the component doesn't allow to store values at this address.
@@ -96,4 +112,12 @@ public final class RamController implements Component {
 
     }
 
+    /**
+     * return the address range of the controller.
+     */
+    @Override
+    public int[] addressRanges() {
+        return new int[] { start, end };
+    }
+
 }
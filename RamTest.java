@@ -0,0 +1,59 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.memory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class RamTest {
+
+    @Test
+    void copyIsNotAffectedByLaterWrites() {
+        Ram ram = new Ram(1000);
+        for (int i = 0; i < ram.size(); i++)
+            ram.write(i, i & 0xFF);
+        Ram.Pages copy = ram.copy();
+        for (int i = 0; i < ram.size(); i++)
+            ram.write(i, 0xFF - (i & 0xFF));
+
+        Ram other = new Ram(1000);
+        other.restore(copy);
+        for (int i = 0; i < other.size(); i++) {
+            assertEquals(i & 0xFF, other.read(i));
+            assertEquals(0xFF - (i & 0xFF), ram.read(i));
+        }
+    }
+
+    @Test
+    void restoredCopyCanBeRestoredAgain() {
+        Ram ram = new Ram(300);
+        ram.write(299, 42);
+        Ram.Pages copy = ram.copy();
+        for (int n = 0; n < 3; n++) {
+            ram.write(299, n);
+            ram.write(0, n);
+            ram.restore(copy);
+            assertEquals(42, ram.read(299));
+            assertEquals(0, ram.read(0));
+        }
+    }
+
+    @Test
+    void restoreFailsForCopyOfOtherSize() {
+        Ram ram = new Ram(127);
+        assertThrows(IllegalArgumentException.class,
+                () -> ram.restore(new Ram(128).copy()));
+    }
+
+    @Test
+    void readAndWriteCheckIndex() {
+        Ram ram = new Ram(0);
+        assertThrows(IndexOutOfBoundsException.class, () -> ram.read(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> ram.write(0, 0));
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * represents a history of the last snapshots of a simulation, from which it
+ * can be rewound. The history is a ring buffer of fixed capacity: once full,
+ * the oldest snapshots are forgotten.
+ *
+ * Every snapshot is stored as the xor of its bytes with those of a reference,
+ * in which the runs of zeros are replaced by their length. The reference of a
+ * keyframe, taken at regular intervals, contains only zeros, and the one of
+ * the other snapshots is the previous keyframe, which they differ little
+ * from. Storing a snapshot hence costs a few passes over its bytes, whatever
+ * the size of the history.
+ */
+public final class RewindBuffer {
+
+    private final int keyframeInterval;
+    private final byte[][] entries;
+    private final boolean[] keyframes;
+    private int first = 0;
+    private int count = 0;
+    private long byteSize = 0;
+
+    // the bytes of the last keyframe of the history, if it is still there,
+    // and the number of snapshots stored since
+    private byte[] reference = new byte[0];
+    private boolean referenceValid = false;
+    private int sinceKeyframe = 0;
+
+    private byte[] bytes = new byte[0];
+    private byte[] encoded = new byte[0];
+
+    /**
+     * builds an empty history.
+     *
+     * @param capacity
+     *            the maximal number of snapshots kept (must be strictly
+     *            positive)
+     * @param keyframeInterval
+     *            the number of snapshots stored from a keyframe, itself
+     *            included, before the next one (must be strictly positive and
+     *            smaller than or equal to the capacity)
+     * @throws IllegalArgumentException
+     *             if the capacity or the interval is invalid
+     */
+    public RewindBuffer(int capacity, int keyframeInterval) {
+        Preconditions.checkArgument(keyframeInterval > 0
+                && keyframeInterval <= capacity);
+        this.keyframeInterval = keyframeInterval;
+        this.entries = new byte[capacity][];
+        this.keyframes = new boolean[capacity];
+    }
+
+    /**
+     * return the number of snapshots in the history.
+     *
+     * @return the number of snapshots in the history
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * return true iff the history contains no snapshot.
+     *
+     * @return true iff the history is empty
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * return the number of bytes used to store the snapshots of the history.
+     *
+     * @return the size of the stored snapshots in bytes
+     */
+    public long byteSize() {
+        return byteSize;
+    }
+
+    /**
+     * adds the given snapshot to the history, as the most recent one. If the
+     * history is full, the oldest snapshot is forgotten, together with the
+     * following ones until the next keyframe.
+     *
+     * @param snapshot
+     *            the snapshot
+     * @throws NullPointerException
+     *             if the snapshot is null
+     */
+    public void push(Snapshot snapshot) {
+        int size = Objects.requireNonNull(snapshot).encodedSize();
+        if (bytes.length < size) {
+            bytes = new byte[size];
+            encoded = new byte[size + size / 2 + 2 * Integer.BYTES];
+        }
+        snapshot.encodeTo(bytes);
+
+        boolean keyframe = !referenceValid
+                || sinceKeyframe == keyframeInterval
+                || reference.length != size;
+        byte[] entry = Arrays.copyOf(encoded,
+                encode(bytes, keyframe ? null : reference, size, encoded));
+        if (keyframe) {
+            if (reference.length != size)
+                reference = new byte[size];
+            System.arraycopy(bytes, 0, reference, 0, size);
+            referenceValid = true;
+            sinceKeyframe = 0;
+        }
+        ++sinceKeyframe;
+
+        if (count == entries.length) {
+            do {
+                removeFirst();
+            } while (count > 0 && !keyframes[first]);
+        }
+        int last = (first + count) % entries.length;
+        entries[last] = entry;
+        keyframes[last] = keyframe;
+        byteSize += entry.length;
+        ++count;
+    }
+
+    /**
+     * removes the most recent snapshot of the history and returns it.
+     *
+     * @throws NoSuchElementException
+     *             if the history is empty
+     * @return the most recent snapshot
+     */
+    public Snapshot pop() {
+        if (count == 0)
+            throw new NoSuchElementException();
+        int last = (first + count - 1) % entries.length;
+        int keyframe = last;
+        while (!keyframes[keyframe])
+            keyframe = (keyframe + entries.length - 1) % entries.length;
+
+        decode(entries[keyframe], null, bytes);
+        if (keyframe != last)
+            decode(entries[last], bytes, bytes);
+        Snapshot snapshot = Snapshot.decode(bytes);
+
+        if (keyframe == last)
+            referenceValid = false;
+        else if (referenceValid)
+            --sinceKeyframe;
+        byteSize -= entries[last].length;
+        entries[last] = null;
+        --count;
+        return snapshot;
+    }
+
+    /**
+     * forgets all the snapshots of the history.
+     */
+    public void clear() {
+        while (count > 0)
+            removeFirst();
+        referenceValid = false;
+    }
+
+    private void removeFirst() {
+        byteSize -= entries[first].length;
+        entries[first] = null;
+        first = (first + 1) % entries.length;
+        --count;
+    }
+
+    /**
+     * encodes in the given array the xor of the given size first bytes of the
+     * given arrays, the reference being considered as containing only zeros if
+     * it is null, and returns the size of the encoding. The encoding is a
+     * sequence of runs, each of them made of the number of zeros of the run,
+     * of the number n of bytes which follow them and of these n bytes, the
+     * numbers being encoded on 7 bits per byte, the msb indicating whether
+     * another byte follows.
+     */
+    private static int encode(byte[] bytes, byte[] reference, int size,
+            byte[] out) {
+        int o = 0;
+        int i = 0;
+        while (i < size) {
+            int zerosStart = i;
+            while (i < size && xor(bytes, reference, i) == 0)
+                ++i;
+            int literalsStart = i;
+            // a single zero between two literals is cheaper as a literal
+            while (i < size && (xor(bytes, reference, i) != 0
+                    || (i + 1 < size && xor(bytes, reference, i + 1) != 0)))
+                ++i;
+            o = putLength(out, o, literalsStart - zerosStart);
+            o = putLength(out, o, i - literalsStart);
+            for (int j = literalsStart; j < i; j++)
+                out[o++] = xor(bytes, reference, j);
+        }
+        return o;
+    }
+
+    /**
+     * decodes the given encoding into the given array, xored with the given
+     * reference, which can be the array itself, or considered as containing
+     * only zeros if it is null.
+     */
+    private static void decode(byte[] encoded, byte[] reference, byte[] out) {
+        int i = 0;
+        int o = 0;
+        while (i < encoded.length) {
+            int zeros = 0, shift = 0, b;
+            do {
+                b = encoded[i++];
+                zeros |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int literals = 0;
+            shift = 0;
+            do {
+                b = encoded[i++];
+                literals |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            if (reference == null)
+                Arrays.fill(out, o, o + zeros, (byte) 0);
+            else if (reference != out)
+                System.arraycopy(reference, o, out, o, zeros);
+            o += zeros;
+            for (int j = 0; j < literals; j++, o++)
+                out[o] = (byte) (encoded[i++]
+                        ^ (reference == null ? 0 : reference[o]));
+        }
+    }
+
+    private static byte xor(byte[] bytes, byte[] reference, int i) {
+        return reference == null ? bytes[i] : (byte) (bytes[i] ^ reference[i]);
+    }
+
+    private static int putLength(byte[] out, int o, int length) {
+        while (length >= 0x80) {
+            out[o++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        out[o++] = (byte) length;
+        return o;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+
+class RewindBufferTest {
+
+    @Test
+    void popReturnsSnapshotsInReverseOrder() {
+        GameBoy gb = SnapshotTest.newGameBoy();
+        RewindBuffer history = new RewindBuffer(100, 7);
+        Deque<int[]> states = new ArrayDeque<>();
+        for (int i = 0; i < 30; i++) {
+            gb.runUntil(gb.cycles() + 3001);
+            history.push(gb.snapshot());
+            states.push(SnapshotTest.stateOf(gb));
+        }
+
+        GameBoy other = SnapshotTest.newGameBoy();
+        for (int i = 0; i < 12; i++) {
+            other.restore(history.pop());
+            assertArrayEquals(states.pop(), SnapshotTest.stateOf(other));
+        }
+        for (int i = 0; i < 5; i++) {
+            gb.runUntil(gb.cycles() + 1234);
+            history.push(gb.snapshot());
+            states.push(SnapshotTest.stateOf(gb));
+        }
+        while (!history.isEmpty()) {
+            other.restore(history.pop());
+            assertArrayEquals(states.pop(), SnapshotTest.stateOf(other));
+        }
+        assertEquals(0, history.byteSize());
+    }
+
+    @Test
+    void oldestSnapshotsAreForgottenUpToNextKeyframe() {
+        GameBoy gb = SnapshotTest.newGameBoy();
+        RewindBuffer history = new RewindBuffer(10, 4);
+        for (int i = 0; i < 10; i++)
+            history.push(gb.snapshot());
+        assertEquals(10, history.size());
+        history.push(gb.snapshot());
+        assertEquals(7, history.size());
+        for (int i = 0; i < 50; i++) {
+            history.push(gb.snapshot());
+            assertTrue(history.size() <= 10 && history.size() > 10 - 4);
+        }
+    }
+
+    @Test
+    void deltasAreSmallerThanKeyframes() {
+        GameBoy gb = SnapshotTest.newGameBoy();
+        RewindBuffer history = new RewindBuffer(10, 10);
+        gb.runUntil(100_000);
+        history.push(gb.snapshot());
+        long keyframeSize = history.byteSize();
+        gb.runUntil(gb.cycles() + 100);
+        history.push(gb.snapshot());
+        assertTrue(history.byteSize() - keyframeSize < keyframeSize / 10);
+    }
+
+    @Test
+    void popFailsOnEmptyHistory() {
+        assertThrows(NoSuchElementException.class,
+                () -> new RewindBuffer(1, 1).pop());
+    }
+
+    @Test
+    void constructorFailsForInvalidInterval() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(5, 6));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RewindBuffer(5, 0));
+    }
+}
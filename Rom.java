@@ -50,4 +50,25 @@ public final class Rom {
         return Byte.toUnsignedInt(rom[index]);
     }
 
+    /**
+     * copies the given number of bytes of the rom, from the given index, into
+     * the given array, from the given offset.
+     * 
+     * @param index
+     *            the index of the first byte
+     * @param destination
+     *            the array
+     * @param offset
+     *            the offset of the first byte in the array
+     * @param length
+     *            the number of bytes to copy
+     * @throws IndexOutOfBoundsException
+     *             if the bytes are not all in the rom or if the array is too
+     *             small
+     */
+    public void read(int index, byte[] destination, int offset, int length) {
+        System.arraycopy(rom, Objects.checkFromIndexSize(index, length,
+                rom.length), destination, offset, length);
+    }
+
 }
\ No newline at end of file
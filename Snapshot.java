@@ -0,0 +1,315 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * represents the state of a Game Boy at a given cycle, from which its
+ * simulation can be resumed as many times as needed. A snapshot is immutable.
+ *
+ * The registers of the components are stored as bytes, in the order in which
+ * the components write them, and the memories as copies sharing their pages
+ * with the memories of the Game Boy until these pages are written.
+ */
+public final class Snapshot {
+
+    private final byte[] state;
+    private final Ram.Pages[] memories;
+
+    private Snapshot(byte[] state, Ram.Pages[] memories) {
+        this.state = state;
+        this.memories = memories;
+    }
+
+    /**
+     * return the number of bytes used to store the registers of the
+     * components, the memories excluded.
+     *
+     * @return the size of the registers of the snapshot in bytes
+     */
+    public int stateSize() {
+        return state.length;
+    }
+
+    /**
+     * return the total size of the memories of the snapshot in bytes, most of
+     * them being in general shared with the Game Boy or with other snapshots.
+     *
+     * @return the size of the memories of the snapshot in bytes
+     */
+    public int memoriesSize() {
+        int size = 0;
+        for (Ram.Pages m : memories)
+            size += m.size();
+        return size;
+    }
+
+    /**
+     * return the size of the registers of this snapshot followed by the sizes
+     * of its memories, which are the same for all the snapshots of Game Boys
+     * using the same kind of cartridge.
+     */
+    int[] layout() {
+        int[] layout = new int[1 + memories.length];
+        layout[0] = state.length;
+        for (int i = 0; i < memories.length; i++)
+            layout[1 + i] = memories[i].size();
+        return layout;
+    }
+
+    /**
+     * return true iff this snapshot has the given layout, as returned by
+     * layout, without allocating any memory.
+     */
+    boolean hasLayout(int[] layout) {
+        if (layout.length != 1 + memories.length || layout[0] != state.length)
+            return false;
+        for (int i = 0; i < memories.length; i++) {
+            if (layout[1 + i] != memories[i].size())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * return the number of bytes of the encoding of this snapshot.
+     */
+    int encodedSize() {
+        return (2 + memories.length) * Integer.BYTES + state.length
+                + memoriesSize();
+    }
+
+    /**
+     * writes the bytes of this snapshot, memories included, into the given
+     * array: the size of the registers, the number of memories and their
+     * sizes, followed by the registers and by the content of the memories.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the array is smaller than the encoded size
+     */
+    void encodeTo(byte[] bytes) {
+        int offset = putInt(bytes, 0, state.length);
+        offset = putInt(bytes, offset, memories.length);
+        for (Ram.Pages m : memories)
+            offset = putInt(bytes, offset, m.size());
+        System.arraycopy(state, 0, bytes, offset, state.length);
+        offset += state.length;
+        for (Ram.Pages m : memories) {
+            m.copyTo(bytes, offset);
+            offset += m.size();
+        }
+    }
+
+    /**
+     * return the snapshot whose bytes, as written by encodeTo, are the first
+     * ones of the given array.
+     *
+     * @throws IndexOutOfBoundsException
+     *             if the array does not contain a whole snapshot
+     */
+    static Snapshot decode(byte[] bytes) {
+        int stateSize = getInt(bytes, 0);
+        Ram.Pages[] memories = new Ram.Pages[getInt(bytes, Integer.BYTES)];
+        int offset = (2 + memories.length) * Integer.BYTES;
+        Objects.checkFromIndexSize(offset, stateSize, bytes.length);
+        byte[] state = Arrays.copyOfRange(bytes, offset, offset + stateSize);
+        offset += stateSize;
+        for (int i = 0; i < memories.length; i++) {
+            int size = getInt(bytes, (2 + i) * Integer.BYTES);
+            memories[i] = Ram.Pages.of(bytes, offset, size);
+            offset += size;
+        }
+        return new Snapshot(state, memories);
+    }
+
+    private static int putInt(byte[] bytes, int offset, int value) {
+        for (int i = Integer.SIZE - Byte.SIZE; i >= 0; i -= Byte.SIZE)
+            bytes[offset++] = (byte) (value >>> i);
+        return offset;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++)
+            value = (value << Byte.SIZE) | Byte.toUnsignedInt(bytes[offset + i]);
+        return value;
+    }
+
+    /**
+     * builds a snapshot from the values written by the components, which can
+     * be reused for several snapshots.
+     */
+    public static final class Writer {
+        private byte[] state = new byte[64];
+        private int size = 0;
+        private final List<Ram.Pages> memories = new ArrayList<>();
+
+        Writer() {
+        }
+
+        /**
+         * writes the given 8 bits value.
+         *
+         * @param value
+         *            the value (must be an 8 bits value)
+         * @throws IllegalArgumentException
+         *             if the value is not an 8 bits value
+         */
+        public void writeByte(int value) {
+            Preconditions.checkBits8(value);
+            if (size == state.length)
+                state = Arrays.copyOf(state, 2 * size);
+            state[size++] = (byte) value;
+        }
+
+        /**
+         * writes the given boolean.
+         *
+         * @param value
+         *            the value
+         */
+        public void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        /**
+         * writes the given int.
+         *
+         * @param value
+         *            the value
+         */
+        public void writeInt(int value) {
+            for (int i = Integer.SIZE - Byte.SIZE; i >= 0; i -= Byte.SIZE)
+                writeByte((value >>> i) & 0xFF);
+        }
+
+        /**
+         * writes the given long.
+         *
+         * @param value
+         *            the value
+         */
+        public void writeLong(long value) {
+            writeInt((int) (value >>> Integer.SIZE));
+            writeInt((int) value);
+        }
+
+        /**
+         * writes a copy of the content of the given memory.
+         *
+         * @param ram
+         *            the memory
+         */
+        public void writeRam(Ram ram) {
+            memories.add(ram.copy());
+        }
+
+        /**
+         * return a snapshot containing the values written since the last
+         * snapshot built by this writer.
+         */
+        Snapshot build() {
+            Snapshot s = new Snapshot(Arrays.copyOf(state, size),
+                    memories.toArray(new Ram.Pages[memories.size()]));
+            size = 0;
+            memories.clear();
+            return s;
+        }
+    }
+
+    /**
+     * reads the values of a snapshot in the order in which they were written.
+     * A reader can be reused for several snapshots, and reading does not
+     * allocate anything.
+     */
+    public static final class Reader {
+        private Snapshot snapshot;
+        private int position;
+        private int memory;
+
+        Reader() {
+        }
+
+        /**
+         * starts reading the given snapshot from its beginning.
+         */
+        void reset(Snapshot snapshot) {
+            this.snapshot = Objects.requireNonNull(snapshot);
+            position = 0;
+            memory = 0;
+        }
+
+        /**
+         * return the next value, an 8 bits value.
+         *
+         * @throws IllegalArgumentException
+         *             if all the values have already been read
+         * @return the next value
+         */
+        public int readByte() {
+            Preconditions.checkArgument(position < snapshot.state.length);
+            return Byte.toUnsignedInt(snapshot.state[position++]);
+        }
+
+        /**
+         * return the next value, a boolean.
+         *
+         * @throws IllegalArgumentException
+         *             if all the values have already been read
+         * @return the next value
+         */
+        public boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        /**
+         * return the next value, an int.
+         *
+         * @throws IllegalArgumentException
+         *             if all the values have already been read
+         * @return the next value
+         */
+        public int readInt() {
+            int value = 0;
+            for (int i = 0; i < Integer.BYTES; i++)
+                value = (value << Byte.SIZE) | readByte();
+            return value;
+        }
+
+        /**
+         * return the next value, a long.
+         *
+         * @throws IllegalArgumentException
+         *             if all the values have already been read
+         * @return the next value
+         */
+        public long readLong() {
+            long msb = readInt();
+            return (msb << Integer.SIZE) | Integer.toUnsignedLong(readInt());
+        }
+
+        /**
+         * replaces the content of the given memory by the next memory of the
+         * snapshot.
+         *
+         * @param ram
+         *            the memory
+         * @throws IllegalArgumentException
+         *             if all the memories have already been read, or if the
+         *             next one does not have the size of the given memory
+         */
+        public void readRam(Ram ram) {
+            Preconditions.checkArgument(memory < snapshot.memories.length);
+            ram.restore(snapshot.memories[memory++]);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.component.cartridge.Cartridge;
+import ch.epfl.gameboj.component.lcd.LcdController;
+import ch.epfl.gameboj.component.memory.Rom;
+
+class SnapshotTest {
+
+    // LD HL,C000 ; loop: INC A ; LD (HL+),A ; RES 5,H ; JR loop
+    private static final byte[] PROGRAM = { 0x21, 0x00, (byte) 0xC0, 0x3C,
+            0x22, (byte) 0xCB, (byte) 0xAC, 0x18, (byte) 0xFA };
+
+    static GameBoy newGameBoy() {
+        return newGameBoy(0, 0);
+    }
+
+    // a gameboy whose cartridge has the given type and ram size codes
+    static GameBoy newGameBoy(int type, int ramSize) {
+        byte[] data = new byte[0x8000];
+        System.arraycopy(PROGRAM, 0, data, 0, PROGRAM.length);
+        data[0x147] = (byte) type;
+        data[0x149] = (byte) ramSize;
+        GameBoy gb = new GameBoy(Cartridge.ofRom(new Rom(data)));
+        gb.bus().write(AddressMap.REG_BOOT_ROM_DISABLE, 1);
+        gb.bus().write(AddressMap.REG_TAC, 0b101);
+        gb.bus().write(AddressMap.REGS_LCDC_START, 0x91);
+        return gb;
+    }
+
+    static int[] stateOf(GameBoy gb) {
+        int[] state = new int[AddressMap.WORK_RAM_SIZE + 3];
+        for (int i = 0; i < AddressMap.WORK_RAM_SIZE; i++)
+            state[i] = gb.bus().read(AddressMap.WORK_RAM_START + i);
+        state[AddressMap.WORK_RAM_SIZE] = gb.bus().read(AddressMap.REG_TIMA);
+        state[AddressMap.WORK_RAM_SIZE + 1] = gb.bus().read(AddressMap.REGS_LCDC_START + 4);
+        state[AddressMap.WORK_RAM_SIZE + 2] = gb.cpu()._testGetPcSpAFBCDEHL()[2];
+        return state;
+    }
+
+    @Test
+    void restoredGameBoyContinuesIdentically() {
+        GameBoy gb = newGameBoy();
+        gb.runUntil(100_001);
+        Snapshot snapshot = gb.snapshot();
+        gb.runUntil(250_000);
+        int[] expected = stateOf(gb);
+
+        gb.restore(snapshot);
+        assertEquals(100_001, gb.cycles());
+        gb.runUntil(250_000);
+        assertArrayEquals(expected, stateOf(gb));
+
+        GameBoy other = newGameBoy();
+        other.runUntil(1000);
+        other.restore(snapshot);
+        other.runUntil(250_000);
+        assertArrayEquals(expected, stateOf(other));
+    }
+
+    @Test
+    void snapshotIsNotModifiedBySimulation() {
+        GameBoy gb = newGameBoy();
+        gb.runUntil(50_000);
+        Snapshot snapshot = gb.snapshot();
+        int[] expected = stateOf(gb);
+        for (int n = 0; n < 3; n++) {
+            gb.runUntil(gb.cycles() + 30_000);
+            gb.restore(snapshot);
+            assertArrayEquals(expected, stateOf(gb));
+        }
+    }
+
+    @Test
+    void snapshotOfOtherCartridgeIsRejectedWithoutChangingState() {
+        GameBoy gb = newGameBoy();
+        gb.runUntil(70_000);
+        int[] expected = stateOf(gb);
+        Snapshot expectedSnapshot = gb.snapshot();
+
+        for (GameBoy other : new GameBoy[] { newGameBoy(1, 2),
+                newGameBoy(1, 3) }) {
+            other.runUntil(40_000);
+            Snapshot snapshot = other.snapshot();
+            assertThrows(IllegalArgumentException.class,
+                    () -> gb.restore(snapshot));
+            assertEquals(70_000, gb.cycles());
+            assertArrayEquals(expected, stateOf(gb));
+        }
+
+        gb.runUntil(90_000);
+        int[] continued = stateOf(gb);
+        gb.restore(expectedSnapshot);
+        gb.runUntil(90_000);
+        assertArrayEquals(continued, stateOf(gb));
+    }
+
+    @Test
+    void imageAfterSnapshotTakenAtEndOfImageIsNotTorn() {
+        GameBoy gb = newGameBoy();
+        LcdController lcdc = gb.lcdController();
+        lcdc.setRenderMode(LcdController.RenderMode.FRAME_BUFFER);
+        // BGP
+        gb.bus().write(AddressMap.REGS_LCDC_START + 7, 0b11100100);
+        for (int a = AddressMap.VIDEO_RAM_START; a < AddressMap.VIDEO_RAM_END; a++)
+            gb.bus().write(a, (a * 7) & 0xFF);
+        while (!gb.runUntilImage(gb.cycles() + LcdController.CYCLES_PER_IMAGE))
+            ;
+        Snapshot snapshot = gb.snapshot();
+        gb.runUntilImage(gb.cycles() + LcdController.CYCLES_PER_IMAGE);
+        byte[] expected = lcdc.currentFrame().clone();
+
+        // the video ram is changed in another timeline, whose image is
+        // interrupted half-way by the restoration
+        for (int a = AddressMap.VIDEO_RAM_START; a < AddressMap.VIDEO_RAM_END; a++)
+            gb.bus().write(a, (a * 13) & 0xFF);
+        gb.runUntil(gb.cycles() + LcdController.CYCLES_PER_IMAGE / 2);
+        gb.restore(snapshot);
+        for (int a = AddressMap.VIDEO_RAM_START; a < AddressMap.VIDEO_RAM_END; a++)
+            gb.bus().write(a, (a * 7) & 0xFF);
+        gb.runUntilImage(gb.cycles() + LcdController.CYCLES_PER_IMAGE);
+        assertArrayEquals(expected, lcdc.currentFrame());
+    }
+
+    @Test
+    void runUntilImageRunsUntilCycleWhenScreenIsOff() {
+        GameBoy gb = newGameBoy();
+        gb.bus().write(AddressMap.REGS_LCDC_START, 0x11);
+        assertFalse(gb.runUntilImage(3 * LcdController.CYCLES_PER_IMAGE));
+        assertEquals(3 * LcdController.CYCLES_PER_IMAGE, gb.cycles());
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component;
+
+import ch.epfl.gameboj.Snapshot;
+
+public interface Stateful {
+    /**
+     * writes the whole state of the component, that is everything it needs to
+     * resume its simulation from the current cycle.
+     *
+     * @param writer
+     *            the writer of the snapshot
+     */
+    public abstract void saveState(Snapshot.Writer writer);
+
+    /**
+     * replaces the state of the component by the one read from the given
+     * snapshot, in the order in which saveState writes it.
+     *
+     * @param reader
+     *            the reader of the snapshot
+     * @throws IllegalArgumentException
+     *             if the snapshot does not contain a state of this component
+     */
+    public abstract void restoreState(Snapshot.Reader reader);
+}
@@ -0,0 +1,159 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import ch.epfl.gameboj.bits.Bits;
+import ch.epfl.gameboj.component.memory.Ram;
+
+/**
+ * represents a cache of the rows of the 384 tiles stored in the video ram,
+ * decoded once and for all until one of their bytes is modified.
+ *
+ * A decoded row is an integer containing, in its 16 lsb, the bytes of the row
+ * reversed so that the bit of index i corresponds to the pixel of index i
+ * (the msb byte in the bits 8 to 15 and the lsb byte in the bits 0 to 7), and
+ * in its 16 msb the colors of the 8 pixels of the row, the color of the pixel
+ * of index i being in the bits 16 + 2i and 17 + 2i.
+ */
+final class TileCache {
+
+    private static final int TILE_COUNT = 384;
+    private static final int ROWS_PER_TILE = 8;
+    private static final int BYTES_PER_ROW = 2;
+    private static final int ROW_COUNT = TILE_COUNT * ROWS_PER_TILE;
+    private static final int COLORS_START = 16;
+
+    private final Ram videoRam;
+    private final int[] rows = new int[ROW_COUNT];
+    private final long[] dirtyRows = new long[ROW_COUNT / Long.SIZE];
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * builds a cache of the tiles stored in the given video ram, whose rows
+     * are all to be decoded.
+     *
+     * @param videoRam
+     *            the video ram
+     * @throws NullPointerException
+     *             if the video ram is null
+     */
+    TileCache(Ram videoRam) {
+        this.videoRam = Objects.requireNonNull(videoRam);
+        Arrays.fill(dirtyRows, -1L);
+    }
+
+    /**
+     * marks as dirty the row containing the byte of given index in the video
+     * ram, if it belongs to a tile.
+     *
+     * @param index
+     *            the index of the modified byte in the video ram
+     */
+    void invalidate(int index) {
+        int row = index / BYTES_PER_ROW;
+        if (row < ROW_COUNT) {
+            dirtyRows[row / Long.SIZE] |= 1L << row;
+        }
+    }
+
+    /**
+     * marks all the rows as dirty, for example after the whole content of the
+     * video ram has been replaced.
+     */
+    void invalidateAll() {
+        Arrays.fill(dirtyRows, -1L);
+    }
+
+    /**
+     * return the decoded row of given index, the rows being indexed in the
+     * order of their bytes in the video ram. The row is decoded again if it is
+     * dirty.
+     *
+     * @param row
+     *            the index of the row (must be between 0 (included) and 3072
+     *            (excluded))
+     * @return the decoded row
+     */
+    int row(int row) {
+        long rowBit = 1L << row;
+        int word = row / Long.SIZE;
+        if ((dirtyRows[word] & rowBit) == 0) {
+            ++hits;
+            return rows[row];
+        }
+        ++misses;
+        dirtyRows[word] &= ~rowBit;
+        int lsb = Bits.reverse8(videoRam.read(BYTES_PER_ROW * row));
+        int msb = Bits.reverse8(videoRam.read(BYTES_PER_ROW * row + 1));
+        int colors = 0;
+        for (int i = 0; i < Byte.SIZE; i++) {
+            colors |= ((((msb >>> i) & 1) << 1) | ((lsb >>> i) & 1)) << (2 * i);
+        }
+        return rows[row] = (colors << COLORS_START) | (msb << Byte.SIZE) | lsb;
+    }
+
+    /**
+     * return the color of the pixel of given index in the given decoded row.
+     *
+     * @param row
+     *            the decoded row
+     * @param index
+     *            the index of the pixel (must be between 0 and 7)
+     * @return the color of the pixel, between 0 and 3
+     */
+    static int color(int row, int index) {
+        return (row >>> (COLORS_START + 2 * index)) & 0b11;
+    }
+
+    /**
+     * return the msb byte of the given decoded row, whose bit of index i
+     * corresponds to the pixel of index i.
+     *
+     * @param row
+     *            the decoded row
+     * @return the msb byte of the row
+     */
+    static int msb(int row) {
+        return (row >>> Byte.SIZE) & 0xFF;
+    }
+
+    /**
+     * return the lsb byte of the given decoded row, whose bit of index i
+     * corresponds to the pixel of index i.
+     *
+     * @param row
+     *            the decoded row
+     * @return the lsb byte of the row
+     */
+    static int lsb(int row) {
+        return row & 0xFF;
+    }
+
+    /**
+     * return the number of rows which did not have to be decoded again when
+     * they were requested.
+     *
+     * @return the number of hits of the cache
+     */
+    long hits() {
+        return hits;
+    }
+
+    /**
+     * return the number of rows which had to be decoded when they were
+     * requested.
+     *
+     * @return the number of misses of the cache
+     */
+    long misses() {
+        return misses;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component.lcd;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.memory.Ram;
+
+class TileCacheTest {
+
+    @Test
+    void rowIsCorrectlyDecoded() {
+        Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        videoRam.write(6, 0b1100_0101);
+        videoRam.write(7, 0b1010_0011);
+        TileCache cache = new TileCache(videoRam);
+
+        int row = cache.row(3);
+        assertEquals(0b1100_0101, TileCache.msb(row));
+        assertEquals(0b1010_0011, TileCache.lsb(row));
+        int[] colors = { 3, 1, 2, 0, 0, 1, 2, 3 };
+        for (int i = 0; i < colors.length; i++)
+            assertEquals(colors[i], TileCache.color(row, i));
+    }
+
+    @Test
+    void rowIsDecodedAgainOnlyWhenInvalidated() {
+        Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        TileCache cache = new TileCache(videoRam);
+
+        assertEquals(0, cache.row(100));
+        videoRam.write(201, 0xFF);
+        assertEquals(0, cache.row(100));
+        cache.invalidate(201);
+        assertEquals(0xFF, TileCache.msb(cache.row(100)));
+        assertEquals(0, TileCache.lsb(cache.row(100)));
+
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    void invalidateIgnoresTileMaps() {
+        Ram videoRam = new Ram(AddressMap.VIDEO_RAM_SIZE);
+        TileCache cache = new TileCache(videoRam);
+        cache.row(0);
+        for (int i = 0x1800; i < AddressMap.VIDEO_RAM_SIZE; i++)
+            cache.invalidate(i);
+        cache.row(0);
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+}
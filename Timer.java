@@ -6,15 +6,26 @@
 package ch.epfl.gameboj.component;
 
 import java.util.Objects;
+import java.util.function.LongSupplier;
 
 import ch.epfl.gameboj.AddressMap;
 import ch.epfl.gameboj.Preconditions;
+import ch.epfl.gameboj.Snapshot;
 import ch.epfl.gameboj.bits.Bits;
 import ch.epfl.gameboj.component.cpu.Cpu;
 
-public final class Timer implements Component, Clocked {
+public final class Timer implements Component, Clocked, Stateful {
 
     private final Cpu cpu;
+    private final LongSupplier clock;
+
+    /**
+     * the last cycle up to which the registers are up to date, and the cycle
+     * at which the secondary timer will overflow if no register is written
+     * before, or Long.MAX_VALUE if it is disabled
+     */
+    private long lastCycle = -1;
+    private long overflowCycle = Long.MAX_VALUE;
 
     // Declaration of registers addresses.
     int DIV = 0;
@@ -23,7 +34,8 @@ public final class Timer implements Component, Clocked {
     int TAC = 0;
 
     /**
-     * builds a timer associated to the given processor.
+     * builds a timer associated to the given processor, whose registers are
+     * only brought up to date when it is cycled.
      * 
      * @param cpu
      *            the processor
@@ -33,16 +45,43 @@ public final class Timer implements Component, Clocked {
     public Timer(Cpu cpu) {
         Objects.requireNonNull(cpu);
         this.cpu = cpu;
+        this.clock = () -> lastCycle;
+    }
+
+    /**
+     * builds a timer associated to the given processor, whose registers are
+     * brought up to date, when they are read or written, to the current cycle
+     * given by the clock. The timer then only needs to be cycled at its
+     * events.
+     * 
+     * @param cpu
+     *            the processor
+     * @param clock
+     *            the clock giving the cycle being simulated
+     * @throws NullPointerException
+     *             if the processor or the clock is null
+     */
+    public Timer(Cpu cpu, LongSupplier clock) {
+        this.cpu = Objects.requireNonNull(cpu);
+        this.clock = Objects.requireNonNull(clock);
     }
 
     @Override
     /**
-     * updates the main timer, and the secondary if needed.
+     * brings the timer up to date at the given cycle.
      */
     public void cycle(long cycle) {
-        boolean s0 = state();
-        DIV = Bits.clip(16, DIV + 4);
-        incIfChange(s0);
+        sync(cycle);
+    }
+
+    @Override
+    /**
+     * return the cycle at which the secondary timer overflows and requests an
+     * interruption, or Long.MAX_VALUE if it is disabled. Its increments
+     * before the overflow are computed when the timer is brought up to date.
+     */
+    public long nextEventCycle(long cycle) {
+        return Math.max(cycle, overflowCycle);
     }
 
     @Override
@@ -51,6 +90,9 @@ public final class Timer implements Component, Clocked {
      */
     public int read(int address) {
         Preconditions.checkBits16(address);
+        if (address < AddressMap.REG_DIV || address > AddressMap.REG_TAC)
+            return NO_DATA;
+        sync(clock.getAsLong());
         switch (address) {
         case AddressMap.REG_DIV:
             return Bits.extract(DIV, 8, 8);
@@ -72,6 +114,9 @@ public final class Timer implements Component, Clocked {
     public void write(int address, int data) {
         Preconditions.checkBits8(data);
         Preconditions.checkBits16(address);
+        if (address < AddressMap.REG_DIV || address > AddressMap.REG_TAC)
+            return;
+        sync(clock.getAsLong());
         boolean s0 = state();
         switch (address) {
         case AddressMap.REG_DIV:
@@ -88,9 +133,81 @@ public final class Timer implements Component, Clocked {
             break;
         }
         incIfChange(s0);
+        updateOverflowCycle();
+    }
+
+    /**
+     * return the addresses of the timer registers.
+     */
+    @Override
+    public int[] addressRanges() {
+        return new int[] { AddressMap.REG_DIV, AddressMap.REG_TAC + 1 };
+    }
+
+    /**
+     * writes the registers of the timer and the last cycle during which it
+     * was cycled.
+     */
+    @Override
+    public void saveState(Snapshot.Writer writer) {
+        writer.writeLong(lastCycle);
+        writer.writeInt(DIV);
+        writer.writeByte(TIMA);
+        writer.writeByte(TMA);
+        writer.writeByte(TAC);
+    }
+
+    @Override
+    public void restoreState(Snapshot.Reader reader) {
+        lastCycle = reader.readLong();
+        DIV = reader.readInt();
+        TIMA = reader.readByte();
+        TMA = reader.readByte();
+        TAC = reader.readByte();
+        updateOverflowCycle();
+    }
+
+    /**
+     * brings the registers up to date at the given cycle, if they are not
+     * already. The main timer evolves by 4 at each cycle elapsed since the
+     * last update, and the secondary timer is incremented once for each
+     * falling edge of the selected bit of the main timer during these cycles.
+     */
+    private void sync(long cycle) {
+        if (cycle <= lastCycle)
+            return;
+        long div = DIV + 4 * (cycle - lastCycle);
+        long increments = 0;
+        if (Bits.test(TAC, 2)) {
+            int period = 1 << (stateBitIndex() + 1);
+            increments = div / period - DIV / period;
+        }
+        DIV = (int) (div & 0xFFFF);
+        lastCycle = cycle;
+        incrementTima(increments);
+        updateOverflowCycle();
+    }
+
+    /**
+     * computes the cycle at which the secondary timer overflows, that of the
+     * falling edge of the selected bit of the main timer at which it reaches
+     * 0x100.
+     */
+    private void updateOverflowCycle() {
+        if (Bits.test(TAC, 2)) {
+            long period = 1 << (stateBitIndex() + 1);
+            long overflowDiv = (DIV / period + 0x100 - TIMA) * period;
+            overflowCycle = lastCycle + (overflowDiv - DIV) / 4;
+        } else {
+            overflowCycle = Long.MAX_VALUE;
+        }
     }
 
     private boolean state() {
+        return (Bits.test(TAC, 2) && Bits.test(DIV, stateBitIndex()));
+    }
+
+    private int stateBitIndex() {
         int i = 0;
 
         switch (Bits.extract(TAC, 0, 2)) {
@@ -114,17 +231,28 @@ public final class Timer implements Component, Clocked {
         }
             break;
         }
-        return (Bits.test(TAC, 2) && Bits.test(DIV, i));
+        return i;
     }
 
     private void incIfChange(boolean s0) {
-        if (s0 && !state()) {
-            if (TIMA == 0xFF) {
-                cpu.requestInterrupt(Cpu.Interrupt.TIMER);
-                TIMA = TMA;
-            } else {
-                TIMA += 1;
+        if (s0 && !state())
+            incrementTima(1);
+    }
+
+    /**
+     * increments the secondary timer the given number of times, reloading it
+     * with TMA and requesting an interruption at each overflow.
+     */
+    private void incrementTima(long increments) {
+        while (increments > 0) {
+            int untilOverflow = 0x100 - TIMA;
+            if (increments < untilOverflow) {
+                TIMA += (int) increments;
+                return;
             }
+            increments -= untilOverflow;
+            cpu.requestInterrupt(Cpu.Interrupt.TIMER);
+            TIMA = TMA;
         }
     }
 }
\ No newline at end of file
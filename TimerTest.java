@@ -0,0 +1,98 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.component;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.epfl.gameboj.AddressMap;
+import ch.epfl.gameboj.component.cpu.Cpu;
+
+class TimerTest {
+
+    private static final int CYCLES = 20_000;
+    private static final int TIMER_MASK = 1 << Cpu.Interrupt.TIMER.index();
+
+    private static Timer newTimer(Cpu cpu, Random rng) {
+        Timer timer = new Timer(cpu);
+        timer.write(AddressMap.REG_TMA, rng.nextInt(0x100));
+        timer.write(AddressMap.REG_TIMA, rng.nextInt(0x100));
+        timer.write(AddressMap.REG_TAC, 0b100 | rng.nextInt(4));
+        return timer;
+    }
+
+    // return true if the timer requested an interruption, which is cleared
+    private static boolean interrupted(Cpu cpu) {
+        int requests = cpu.read(AddressMap.REG_IF);
+        cpu.write(AddressMap.REG_IF, 0);
+        return (requests & TIMER_MASK) != 0;
+    }
+
+    @Test
+    void timerCycledOnlyAtItsEventsOverflowsAtSameCycles() {
+        for (long seed = 0; seed < 20; seed++) {
+            Cpu eachCpu = new Cpu(), eventsCpu = new Cpu();
+            Timer each = newTimer(eachCpu, new Random(seed));
+            Timer events = newTimer(eventsCpu, new Random(seed));
+
+            long next = events.nextEventCycle(0);
+            for (long c = 0; c < CYCLES; c++) {
+                each.cycle(c);
+                boolean overflow = interrupted(eachCpu);
+                assertEquals(c == next, overflow);
+                if (c == next) {
+                    events.cycle(c);
+                    assertEquals(true, interrupted(eventsCpu));
+                    for (int a = AddressMap.REG_DIV; a <= AddressMap.REG_TAC; a++)
+                        assertEquals(each.read(a), events.read(a));
+                    next = events.nextEventCycle(c + 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    void timerUpdatedOnAccessGivesSameRegistersAndInterruptions() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random rng = new Random(seed);
+            long[] now = { 0 };
+            Cpu eachCpu = new Cpu(), lazyCpu = new Cpu();
+            Timer each = newTimer(eachCpu, new Random(seed));
+            Timer lazy = new Timer(lazyCpu, () -> now[0]);
+            for (int a = AddressMap.REG_TIMA; a <= AddressMap.REG_TAC; a++)
+                lazy.write(a, each.read(a));
+
+            for (long c = 0; c < CYCLES; c++) {
+                now[0] = c;
+                each.cycle(c);
+                if (lazy.nextEventCycle(c) == c)
+                    lazy.cycle(c);
+                if (rng.nextInt(50) == 0) {
+                    int address = AddressMap.REG_DIV + rng.nextInt(4);
+                    int data = address == AddressMap.REG_TAC
+                            ? rng.nextInt(8) : rng.nextInt(0x100);
+                    each.write(address, data);
+                    lazy.write(address, data);
+                }
+                if (rng.nextInt(10) == 0) {
+                    for (int a = AddressMap.REG_DIV; a <= AddressMap.REG_TAC; a++)
+                        assertEquals(each.read(a), lazy.read(a));
+                }
+                assertEquals(interrupted(eachCpu), interrupted(lazyCpu));
+            }
+        }
+    }
+
+    @Test
+    void disabledTimerHasNoEvent() {
+        Timer timer = new Timer(new Cpu());
+        timer.write(AddressMap.REG_TAC, 0b011);
+        assertEquals(Long.MAX_VALUE, timer.nextEventCycle(0));
+    }
+}
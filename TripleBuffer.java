@@ -0,0 +1,74 @@
+/**
+ *	@author Clément Petit (282626)
+ *	@author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.gui;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.epfl.gameboj.Preconditions;
+
+/**
+ * represents three buffers of integers through which a producer thread hands
+ * frames over to a consumer thread without any lock: the producer fills the
+ * back buffer and publishes it, and the consumer takes the last published
+ * buffer, the frames published in between being dropped. Neither of them ever
+ * waits for the other.
+ */
+public final class TripleBuffer {
+
+    private static final int INDEX_MASK = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final int[][] buffers;
+    // the index of the buffer between the producer and the consumer, with
+    // the bit FRESH set if it was published and not taken yet
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;
+    private int front = 1;
+
+    /**
+     * builds three buffers of the given size, containing only zeros.
+     *
+     * @param size
+     *            the size of the buffers (must be positive)
+     * @throws IllegalArgumentException
+     *             if the size is negative
+     */
+    public TripleBuffer(int size) {
+        Preconditions.checkArgument(size >= 0);
+        buffers = new int[3][size];
+    }
+
+    /**
+     * return the buffer to fill by the producer before calling publish.
+     *
+     * @return the back buffer
+     */
+    public int[] backBuffer() {
+        return buffers[back];
+    }
+
+    /**
+     * makes the back buffer available to the consumer, and gives the
+     * producer a new back buffer. Must only be called by the producer.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * return the last buffer published, if it was published since the last
+     * call, or null otherwise. The buffer returned belongs to the consumer
+     * until the next call. Must only be called by the consumer.
+     *
+     * @return the last buffer published, or null if there is none new
+     */
+    public int[] acquire() {
+        if ((middle.get() & FRESH) == 0)
+            return null;
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return buffers[front];
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.gui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class TripleBufferTest {
+
+    @Test
+    void acquireReturnsLastPublishedBufferOnce() {
+        TripleBuffer buffer = new TripleBuffer(4);
+        assertNull(buffer.acquire());
+        for (int i = 1; i <= 3; i++) {
+            Arrays.fill(buffer.backBuffer(), i);
+            buffer.publish();
+        }
+        int[] b = buffer.acquire();
+        assertNotNull(b);
+        assertEquals(3, b[0]);
+        assertNull(buffer.acquire());
+    }
+
+    @Test
+    void consumerNeverSeesPartialOrOlderBuffers() throws InterruptedException {
+        TripleBuffer buffer = new TripleBuffer(1000);
+        int frames = 20_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= frames; i++) {
+                Arrays.fill(buffer.backBuffer(), i);
+                buffer.publish();
+            }
+        });
+        producer.start();
+
+        int last = 0;
+        int received = 0;
+        while (producer.isAlive() || received == 0) {
+            int[] b = buffer.acquire();
+            if (b == null)
+                continue;
+            for (int v : b)
+                assertEquals(b[0], v);
+            int frame = b[0];
+            assertTrue(frame > last);
+            last = frame;
+            ++received;
+        }
+        producer.join();
+        int[] b = buffer.acquire();
+        assertEquals(frames, b == null ? last : b[0]);
+    }
+}
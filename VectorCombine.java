@@ -0,0 +1,47 @@
+/**
+ *  @author Clément Petit (282626)
+ *  @author Yanis Berkani (271348)
+ */
+
+package ch.epfl.gameboj.bits;
+
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * represents the combination of words of MutableBitVector computed with the
+ * incubating vector module, as many words at once as the lanes of the
+ * preferred vectors of the processor, the remaining words being combined by
+ * the scalar loop.
+ *
+ * This class is optional: it must be compiled and run with the option
+ * --add-modules jdk.incubator.vector, and is only loaded, by name, if this
+ * module is present. Without it, MutableBitVector uses its scalar loop only.
+ */
+final class VectorCombine implements MutableBitVector.CombineKernel {
+
+    private static final VectorSpecies<Integer> SPECIES =
+            IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void combine(int[] high, int[] low, int truthTable,
+            int[] destination) {
+        int f0 = -(truthTable & 1);
+        int f1 = -((truthTable >>> 1) & 1);
+        int f2 = -((truthTable >>> 2) & 1);
+        int f3 = -((truthTable >>> 3) & 1);
+        int bound = SPECIES.loopBound(destination.length);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            IntVector l = IntVector.fromArray(SPECIES, low, i);
+            IntVector h = IntVector.fromArray(SPECIES, high, i);
+            IntVector ifHigh0 = l.and(f0 ^ f1).lanewise(XOR, f0);
+            IntVector ifHigh1 = l.and(f2 ^ f3).lanewise(XOR, f2);
+            ifHigh0.lanewise(XOR, h.and(ifHigh0.lanewise(XOR, ifHigh1)))
+                    .intoArray(destination, i);
+        }
+        MutableBitVector.combineWords(high, low, truthTable, destination,
+                bound);
+    }
+}